@@ -0,0 +1,78 @@
+package com.bitwig.extensions.controllers.melbourneinstruments;
+
+import java.util.Arrays;
+
+/**
+ * Mirror of the CC values the hardware currently shows, i.e. knob positions and button LEDs. Values that the hardware
+ * already shows are not sent again, values coming from the hardware are recorded as shown. After a DAW start or a
+ * detected reset of the hardware nothing is known and everything is sent again.
+ */
+public class DeviceShadow {
+    private static final int UNKNOWN = -1;
+
+    private final int[] ccValues = new int[128];
+    private long suppressed;
+    private long suppressedBytes;
+
+    public DeviceShadow() {
+        Arrays.fill(ccValues, UNKNOWN);
+    }
+
+    /**
+     * Forgets everything, the next value of every CC is sent.
+     */
+    public void invalidate() {
+        Arrays.fill(ccValues, UNKNOWN);
+    }
+
+    /**
+     * Forgets a single CC, i.e. a button the hardware might have lit by itself.
+     */
+    public void invalidate(final int ccNr) {
+        ccValues[ccNr] = UNKNOWN;
+    }
+
+    /**
+     * Records a value reported by the hardware.
+     */
+    public void received(final int ccNr, final int value) {
+        ccValues[ccNr] = value;
+    }
+
+    /**
+     * @return true if the value needs to be sent, the value is recorded as shown in that case
+     */
+    public boolean update(final int ccNr, final int value) {
+        if (ccValues[ccNr] == value) {
+            suppressed++;
+            suppressedBytes += 3;
+            return false;
+        }
+        ccValues[ccNr] = value;
+        return true;
+    }
+
+    /**
+     * A 14-bit value is always sent as a pair, MSB first, so it is sent if either part differs.
+     *
+     * @return true if the pair needs to be sent, both values are recorded as shown in that case
+     */
+    public boolean update(final int ccNr, final int highValue, final int lowValue) {
+        if (ccValues[ccNr] == highValue && ccValues[ccNr + 0x20] == lowValue) {
+            suppressed += 2;
+            suppressedBytes += 6;
+            return false;
+        }
+        ccValues[ccNr] = highValue;
+        ccValues[ccNr + 0x20] = lowValue;
+        return true;
+    }
+
+    public long getSuppressed() {
+        return suppressed;
+    }
+
+    public long getSuppressedBytes() {
+        return suppressedBytes;
+    }
+}
@@ -1,10 +1,8 @@
 package com.bitwig.extensions.controllers.melbourneinstruments;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.function.Consumer;
 
 import com.bitwig.extension.controller.api.Application;
 import com.bitwig.extension.controller.api.ControllerHost;
@@ -30,6 +28,7 @@ import com.bitwig.extensions.controllers.melbourneinstruments.layer.MasterMixLay
 import com.bitwig.extensions.controllers.melbourneinstruments.layer.MixLayerSet;
 import com.bitwig.extensions.controllers.melbourneinstruments.layer.ScrollViewSet;
 import com.bitwig.extensions.controllers.melbourneinstruments.states.MasterEfxTrackBank;
+import com.bitwig.extensions.controllers.melbourneinstruments.states.ProjectTrackMirror;
 import com.bitwig.extensions.controllers.melbourneinstruments.states.TrackState;
 import com.bitwig.extensions.controllers.melbourneinstruments.states.TransportState;
 import com.bitwig.extensions.controllers.melbourneinstruments.value.ButtonMode;
@@ -46,11 +45,6 @@ import com.bitwig.extensions.framework.values.BooleanValueObject;
 @Component
 public class MainLayerHandler {
     
-    private final static List<UpdateType> STD_UPDATE_SEQUENCE_MIXER =
-        List.of(
-            UpdateType.MIXER_MASTER, UpdateType.MIXER_MAIN, UpdateType.SENDS_COUNT, UpdateType.PLUGIN,
-            UpdateType.SELECTION, UpdateType.UPDATE_CONTROLS);
-    
     private final MidiProcessor midiProcessor;
     private final Layer transportLayerLayer;
     private final Layer cursorTrackLayer;
@@ -79,8 +73,8 @@ public class MainLayerHandler {
     private int focusTrackPage = 0;
     private int selectedTrackIndex = 0;
     
-    private final Set<UpdateType> neededUpdate = new HashSet<>();
-    private final List<UpdateType> deferredUpdates = new ArrayList<>();
+    private final UpdatePlanner updatePlanner = new UpdatePlanner();
+    private final Consumer<UpdateType> updateExecutor = this::doUpdate;
     private final BooleanValueObject trackMode = new BooleanValueObject();
     
     private DeviceParameterUpdateState macroChangeState = DeviceParameterUpdateState.NONE;
@@ -107,7 +101,8 @@ public class MainLayerHandler {
         final MasterEfxTrackBank masterFxTrackBank = new MasterEfxTrackBank(viewControl);
         effectTrackSet = new EffectTrackSet(viewControl.getCursorTrack(), masterFxTrackBank, midiProcessor, trackMode);
         this.mixLayerSet =
-            new MainMixLayerSet(layers, midiProcessor, "MAIN", viewControl.getTrackBank(), effectTrackSet);
+            new MainMixLayerSet(layers, midiProcessor, "MAIN", viewControl.getTrackBank(), effectTrackSet,
+                new ProjectTrackMirror(viewControl.getProjectTrackBank()));
         this.masterMixSet = new MasterMixLayerSet(layers, midiProcessor, "MASTER", masterFxTrackBank, effectTrackSet);
         application.projectName().addValueObserver(projectName -> unlockDeviceAndTrack(viewControl.getCursorDevice()));
         
@@ -152,6 +147,9 @@ public class MainLayerHandler {
         
         pluginModeHandler = new PluginModeHandler(this, midiProcessor, viewControl);
         pluginModeHandler.getInMacroMode().addValueObserver(this::handleMacroMode);
+        for (final ScrollViewSet viewSet : List.of(mixLayerSet, masterMixSet, effectTrackSet, pluginModeHandler)) {
+            viewSet.setScrollSettledListener(this::handleScrollSettled);
+        }
         
         final MacroDevice macroDevice = pluginModeHandler.getMacroDevice();
         for (int i = 0; i < 8; i++) {
@@ -273,7 +271,7 @@ public class MainLayerHandler {
     public void toTransportMode() {
         buttonMode = ButtonMode.TRANSPORT;
         activateButtonLayer();
-        midiProcessor.sendSysEx(transportState.toSysExStateString());
+        transportState.sendState(midiProcessor);
     }
     
     public void toPluginMode(final int macroMode) {
@@ -427,7 +425,7 @@ public class MainLayerHandler {
             invokeMacroUpdateTask();
         } else {
             //pluginModeHandler.inPluginMode()
-            midiProcessor.sendSysEx(param.getLearnSysEx());
+            param.sendLearn(midiProcessor);
         }
     }
     
@@ -454,24 +452,35 @@ public class MainLayerHandler {
         pluginModeHandler.lockDevice(lock == 1);
     }
     
+    public boolean hasPendingUpdate() {
+        return updatePlanner.hasPending();
+    }
+    
     public void processPendingUpdate() {
-        if (!neededUpdate.isEmpty()) {
-            if (neededUpdate.contains(UpdateType.UPDATE_CONTROLS)) {
+        if (updatePlanner.hasPending()) {
+            if (updatePlanner.isPending(UpdateType.UPDATE_CONTROLS)) {
                 midiProcessor.setCcOutBlocked(true);
             }
-            STD_UPDATE_SEQUENCE_MIXER.stream() //
-                .filter(neededUpdate::contains) //
-                //.peek(u -> RotoControlExtension.println(" UPDATE %s", u)) //
-                .forEach(this::doUpdate);
-            neededUpdate.clear();
-            if (!deferredUpdates.isEmpty()) {
-                neededUpdate.addAll(deferredUpdates);
-                deferredUpdates.clear();
-            }
+            updatePlanner.process(updateExecutor);
+        }
+    }
+    
+    public String getUpdateStatistics() {
+        return updatePlanner.getStatistics();
+    }
+
+    public void shutdown() {
+        pluginModeHandler.shutdown();
+    }
+    
+    private void handleScrollSettled() {
+        if (updatePlanner.hasPending()) {
+            midiProcessor.requestUpdateOnFlush();
         }
     }
     
     private void doUpdate(final UpdateType type) {
+        //RotoControlExtension.println(" UPDATE %s", type);
         switch (type) {
             case SELECTION -> sendUpdateFocusTrack(true);
             case SENDS_COUNT -> handleSendsCount();
@@ -492,29 +501,42 @@ public class MainLayerHandler {
     
     private void sendUpdates(final ScrollViewSet viewSet, final UpdateType updateType) {
         if (viewSet.scrollInPlace()) {
-            viewSet.sendStates();
+            viewSet.sendChangedStates();
         } else {
-            deferredUpdates.add(updateType);
+            updatePlanner.defer(updateType, UpdatePlanner.DeferReason.SCROLL_PENDING);
         }
     }
     
-    private void sendUpdatesGrouped(final ScrollViewSet viewSet, final UpdateType... updateTypes) {
+    private void sendUpdatesGrouped(final ScrollViewSet viewSet, final UpdateType updateType,
+        final UpdateType groupedType) {
         if (viewSet.scrollInPlace()) {
             viewSet.sendStates();
         } else {
-            Collections.addAll(deferredUpdates, updateTypes);
+            updatePlanner.defer(updateType, UpdatePlanner.DeferReason.SCROLL_PENDING);
+            updatePlanner.defer(groupedType, UpdatePlanner.DeferReason.SCROLL_PENDING);
         }
     }
     
     private void sendUpdateFocusTrack(final boolean force) {
         if (selectedTrackIndex >= 0 && (force || selectedTrackIndex != lastSentTrackIndex)) {
-            midiProcessor.sendSysEx(cursorTrackState.toSysExUpdateSel(selectedTrackIndex));
+            cursorTrackState.sendUpdateSel(midiProcessor, selectedTrackIndex);
             lastSentTrackIndex = selectedTrackIndex;
         }
     }
     
-    private void placeUpdate(final UpdateType... types) {
-        Collections.addAll(neededUpdate, types);
+    private void placeUpdate(final UpdateType type) {
+        updatePlanner.request(type);
+        midiProcessor.requestUpdate();
+    }
+    
+    private void placeUpdate(final UpdateType type1, final UpdateType type2) {
+        updatePlanner.request(type1, type2);
+        midiProcessor.requestUpdate();
+    }
+    
+    private void placeUpdate(final UpdateType type1, final UpdateType type2, final UpdateType type3) {
+        updatePlanner.request(type1, type2, type3);
+        midiProcessor.requestUpdate();
     }
     
     private void updateSelectedTrack() {
@@ -633,6 +655,10 @@ public class MainLayerHandler {
         return buttonParameters.get(pageIndex);
     }
     
+    public void flush() {
+        pluginModeHandler.applyObservedParameters();
+    }
+    
     public void toggleRemotePage() {
         pluginModeHandler.toggleRemotePage();
     }
@@ -0,0 +1,131 @@
+package com.bitwig.extensions.controllers.melbourneinstruments;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Ring buffer journal of all MIDI traffic between Bitwig and the ROTO-CONTROL. Entries are stored in primitive arrays,
+ * SysEx payloads in a separate byte ring, so recording never allocates. The arrays are only allocated once the journal
+ * is enabled for the first time. The oldest entries are
+ * overwritten once the buffer is full. Recording and dumping both happen on the controller thread, so no locking is
+ * involved.
+ * <p>
+ * Dump format: int magic "RCJ1", int version, int entry count followed by the entries, oldest first, each as long
+ * nanoTime, byte type, short length and the raw message bytes.
+ */
+public class MidiJournal {
+    public static final int IN_CC = 0;
+    public static final int IN_SYSEX = 1;
+    public static final int OUT_CC = 2;
+    public static final int OUT_SYSEX = 3;
+
+    private static final int MAGIC = 0x52434A31;
+    private static final int VERSION = 1;
+    private static final int ENTRY_CAPACITY = 1 << 16;
+    private static final int PAYLOAD_CAPACITY = 1 << 20;
+    private static final int SHORT_MESSAGE_SIZE = 3;
+
+    private long[] times;
+    private int[] types;
+    private int[] lengths;
+    // packed short message or absolute payload position of SysEx data
+    private long[] data;
+    private byte[] payload;
+
+    private long entriesWritten;
+    private long payloadWritten;
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        if (enabled && times == null) {
+            times = new long[ENTRY_CAPACITY];
+            types = new int[ENTRY_CAPACITY];
+            lengths = new int[ENTRY_CAPACITY];
+            data = new long[ENTRY_CAPACITY];
+            payload = new byte[PAYLOAD_CAPACITY];
+        }
+        this.enabled = enabled;
+    }
+
+    public void recordShort(final int type, final int status, final int data1, final int data2) {
+        if (!enabled) {
+            return;
+        }
+        final int slot = (int) (entriesWritten++ & (ENTRY_CAPACITY - 1));
+        times[slot] = System.nanoTime();
+        types[slot] = type;
+        lengths[slot] = SHORT_MESSAGE_SIZE;
+        data[slot] = (status << 16) | (data1 << 8) | data2;
+    }
+
+    public void recordSysEx(final int type, final byte[] message, final int length) {
+        if (!enabled || length > PAYLOAD_CAPACITY) {
+            return;
+        }
+        final int slot = (int) (entriesWritten++ & (ENTRY_CAPACITY - 1));
+        times[slot] = System.nanoTime();
+        types[slot] = type;
+        lengths[slot] = length;
+        data[slot] = payloadWritten;
+        final int start = (int) (payloadWritten & (PAYLOAD_CAPACITY - 1));
+        final int firstPart = Math.min(length, PAYLOAD_CAPACITY - start);
+        System.arraycopy(message, 0, payload, start, firstPart);
+        System.arraycopy(message, firstPart, payload, 0, length - firstPart);
+        payloadWritten += length;
+    }
+
+    public void clear() {
+        entriesWritten = 0;
+        payloadWritten = 0;
+    }
+
+    /**
+     * Writes the current content of the journal to the given file.
+     *
+     * @return number of entries written
+     */
+    public int dump(final Path file) throws IOException {
+        final long first = Math.max(0, entriesWritten - ENTRY_CAPACITY);
+        long validFrom = first;
+        // SysEx entries whose payload has already been overwritten are dropped along with everything older
+        for (long index = first; index < entriesWritten; index++) {
+            final int slot = (int) (index & (ENTRY_CAPACITY - 1));
+            if (isSysEx(types[slot]) && data[slot] < payloadWritten - PAYLOAD_CAPACITY) {
+                validFrom = index + 1;
+            }
+        }
+        final int count = (int) (entriesWritten - validFrom);
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            for (long index = validFrom; index < entriesWritten; index++) {
+                final int slot = (int) (index & (ENTRY_CAPACITY - 1));
+                out.writeLong(times[slot]);
+                out.writeByte(types[slot]);
+                out.writeShort(lengths[slot]);
+                if (isSysEx(types[slot])) {
+                    for (int i = 0; i < lengths[slot]; i++) {
+                        out.writeByte(payload[(int) ((data[slot] + i) & (PAYLOAD_CAPACITY - 1))]);
+                    }
+                } else {
+                    out.writeByte((int) (data[slot] >> 16));
+                    out.writeByte((int) (data[slot] >> 8));
+                    out.writeByte((int) data[slot]);
+                }
+            }
+        }
+        return count;
+    }
+
+    private static boolean isSysEx(final int type) {
+        return type == IN_SYSEX || type == OUT_SYSEX;
+    }
+}
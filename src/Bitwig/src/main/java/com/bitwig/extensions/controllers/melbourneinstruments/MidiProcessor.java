@@ -1,11 +1,10 @@
 package com.bitwig.extensions.controllers.melbourneinstruments;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 import com.bitwig.extension.controller.api.AbsoluteHardwareKnob;
 import com.bitwig.extension.controller.api.ControllerHost;
@@ -17,28 +16,27 @@ import com.bitwig.extensions.controllers.melbourneinstruments.control.RotoButton
 import com.bitwig.extensions.controllers.melbourneinstruments.control.RotoKnob;
 import com.bitwig.extensions.controllers.melbourneinstruments.device.ParameterSettings;
 import com.bitwig.extensions.framework.di.Component;
+import com.bitwig.extensions.framework.time.AbstractTimedEvent;
 import com.bitwig.extensions.framework.time.TimedEvent;
+import com.bitwig.extensions.framework.time.TimerWheel;
 
 @Component
 public class MidiProcessor {
     
-    private static final String RCV_HEADER = "f000220302";
-    private static final int RCV_HEADER_OFFSET = RCV_HEADER.length();
     //private RotoPreferences preferences;
     private String version;
     public static final int CMD_ID_GENERAL = 0xA;
     public static final int CMD_ID_PLUGIN = 0xB;
     public static final int CMD_ID_MIXER = 0xC;
-    public static final String HEADER = "F0 00 22 03 02 ";
-    private static final String END_DETAIL_COMMAND = HEADER + "0A 08 F7";
-    private static final String END_PLUGIN_DETAIL_COMMAND = HEADER + "0B 06 F7";
-    private static final String COMMAND_PING = HEADER + "0A 03 02 F7";
-    private static final String COMMAND_DAW_START = HEADER + "0A 01 F7";
-    private static final String COMMAND_VALUE_GENERAL_DIR = HEADER + "0A %s F7";
-    private static final String COMMAND_VALUE_GENERAL = HEADER + "0A %s %s F7";
-    private static final String COMMAND_VALUE_PLUGIN = HEADER + "0B %s %s F7";
-    private static final String COMMAND_VALUE_PLUGIN_UPDATE = HEADER + "0B 08 %02X %02X %02X F7";
-    private static final String COMMAND_VALUE_MIX = HEADER + "0C %s %s F7";
+    private static final byte[] END_DETAIL_COMMAND = SysExFrame.of(CMD_ID_GENERAL, 0x08);
+    private static final byte[] END_PLUGIN_DETAIL_COMMAND = SysExFrame.of(CMD_ID_PLUGIN, 0x06);
+    private static final byte[] COMMAND_PING = SysExFrame.of(CMD_ID_GENERAL, 0x03, 0x02);
+    private static final byte[] COMMAND_DAW_START = SysExFrame.of(CMD_ID_GENERAL, 0x01);
+    private static final int MAX_SUB_COMMANDS = 0x20;
+    private static final int INIT_UPDATE_DELAY = 50;
+    // Fallback for deferred updates in case the bank never reports landing on its position
+    private static final int SCROLL_SETTLE_TIMEOUT = 250;
+    private static final int DISPLAY_RESET_TIME = 1000;
     
     private final ControllerHost host;
     private final MidiIn midiIn;
@@ -47,38 +45,43 @@ public class MidiProcessor {
     private boolean ccOutBlocked = false;
     private boolean initialized = false;
     
-    private final Map<Integer, RotoKnob> valueMatcherMap = new HashMap<>();
-    private final Map<Integer, RotoKnob> valueMatcherBase2Map = new HashMap<>();
-    protected final Queue<TimedEvent> timedEvents = new ConcurrentLinkedQueue<>();
-    private final List<DisplayResetState> resetCalls = new ArrayList<>();
+    private static final int CC_FREE = 0;
+    private static final int CC_KNOB_HIGH = 1;
+    private static final int CC_KNOB_LOW = 2;
+    private static final int CC_HARDWARE = 3;
+    
+    private final int[] ccTypes = new int[128];
+    private final RotoKnob[] ccKnobs = new RotoKnob[128];
+    private final TimerWheel timerWheel;
+    private final TransmitQueue transmitQueue;
+    private final MidiJournal journal = new MidiJournal();
+    private final DeviceShadow deviceShadow = new DeviceShadow();
+    // SysEx API version of the hardware as major << 7 | minor, 0 until reported
+    private int apiVersion = 0;
+    private boolean drainPending = false;
+    private final TimedEvent[] displayResets = new TimedEvent[8];
+    private TimedEvent pendingUpdate;
+    private boolean settleFallback = false;
+    private boolean updateOnFlush = false;
     private final Map<Integer, int[]> pendingCCs = new HashMap<>();
+    private final Deque<SysExFrame> framePool = new ArrayDeque<>();
+    private final SysExMessage incomingMessage = new SysExMessage();
+    private final SysExHandler[] sysExHandlers =
+        new SysExHandler[(CMD_ID_MIXER - CMD_ID_GENERAL + 1) * MAX_SUB_COMMANDS];
+    // number of data bytes each handler reads
+    private final int[] sysExDataLengths = new int[sysExHandlers.length];
     
-    private static class DisplayResetState {
-        private Runnable resetCallback;
-        private long lastUpdate;
-        
-        public void set(final Runnable callback) {
-            this.resetCallback = callback;
-            this.lastUpdate = System.currentTimeMillis();
-        }
-        
-        public void process() {
-            if (resetCallback == null) {
-                return;
-            }
-            final long diff = System.currentTimeMillis() - this.lastUpdate;
-            if (diff > 1000) {
-                resetCallback.run();
-                resetCallback = null;
-            }
-        }
-        
+    @FunctionalInterface
+    private interface SysExHandler {
+        void handle(SysExMessage message);
     }
     
     public MidiProcessor(final ControllerHost host) {
         this.host = host;
         this.midiIn = host.getMidiInPort(0);
         this.midiOut = host.getMidiOutPort(0);
+        this.timerWheel = new TimerWheel(host::scheduleTask);
+        this.transmitQueue = new TransmitQueue(midiOut, journal);
         final NoteInput noteInput =
             midiIn.createNoteInput(
                 "MIDI", "8?????", "9?????", "A?????", "D?????", "B0????", "B1????", "B1????", "B3????", "B4????",
@@ -86,9 +89,7 @@ public class MidiProcessor {
         noteInput.setShouldConsumeEvents(true);
         midiIn.setMidiCallback(this::handleMidiIn);
         midiIn.setSysexCallback(this::handleSysEx);
-        for (int i = 0; i < 8; i++) {
-            this.resetCalls.add(new DisplayResetState());
-        }
+        registerSysExHandlers();
     }
     
     public void setMixState(final MainLayerHandler mixState) {
@@ -102,41 +103,75 @@ public class MidiProcessor {
         final AbsoluteHardwareKnob hwKnob = button.getHwKnob();
         hwKnob.disableTakeOver();
         hwKnob.setAdjustValueMatcher(midiIn.createAbsoluteCCValueMatcher(0xF, ccNr));
+        ccTypes[ccNr] = CC_HARDWARE;
     }
     
     public void setCcMatcher(final HardwareButton button, final int ccNr) {
         button.pressedAction().setActionMatcher(midiIn.createCCActionMatcher(0xF, ccNr, 127));
         button.releasedAction().setActionMatcher(midiIn.createCCActionMatcher(0xF, ccNr, 0));
+        ccTypes[ccNr] = CC_HARDWARE;
     }
     
     public void setCcOutBlocked(final boolean ccOutBlocked) {
         this.ccOutBlocked = ccOutBlocked;
+        if (!ccOutBlocked) {
+            transmitQueue.fence();
+            if (!pendingCCs.isEmpty()) {
+                flushPendingCCs();
+            }
+        }
     }
     
     public void setCcKnobMatcher(final RotoKnob knob) {
-        valueMatcherMap.put(knob.getMidiBase(), knob);
-        valueMatcherBase2Map.put(knob.getMidiBase() + 0x20, knob);
+        ccTypes[knob.getMidiBase()] = CC_KNOB_HIGH;
+        ccKnobs[knob.getMidiBase()] = knob;
+        ccTypes[knob.getMidiBase() + 0x20] = CC_KNOB_LOW;
+        ccKnobs[knob.getMidiBase() + 0x20] = knob;
     }
     
-    public void queueEvent(final TimedEvent event) {
-        timedEvents.add(event);
+    public void queueEvent(final AbstractTimedEvent event) {
+        timerWheel.schedule(event);
     }
     
-    private void processMidi() {
-        mixState.processPendingUpdate();
-        if (!timedEvents.isEmpty()) {
-            for (final TimedEvent event : timedEvents) {
-                event.process();
-                if (event.isCompleted()) {
-                    timedEvents.remove(event);
-                }
-            }
+    /**
+     * Requests processing of the pending updates of the main layer handler on the next tick.
+     */
+    public void requestUpdate() {
+        if (settleFallback && pendingUpdate != null) {
+            pendingUpdate.cancel();
+            pendingUpdate = null;
+        }
+        requestUpdate(TimerWheel.DEFAULT_TICK_TIME);
+    }
+    
+    private void requestUpdate(final int delayTime) {
+        if (initialized && pendingUpdate == null) {
+            pendingUpdate = timerWheel.delay(this::processUpdate, delayTime);
+            settleFallback = delayTime == SCROLL_SETTLE_TIMEOUT;
+        }
+    }
+    
+    /**
+     * Processes the pending updates on the next flush, once all values of a bank that landed on its new position
+     * have been reported. Replaces a retry that is still scheduled.
+     */
+    public void requestUpdateOnFlush() {
+        if (initialized) {
+            updateOnFlush = true;
+        }
+    }
+    
+    private void processUpdate() {
+        if (pendingUpdate != null) {
+            pendingUpdate.cancel();
+            pendingUpdate = null;
         }
-        if (!pendingCCs.isEmpty() && !ccOutBlocked) {
-            flushPendingCCs();
+        updateOnFlush = false;
+        mixState.processPendingUpdate();
+        if (mixState.hasPendingUpdate()) {
+            // whatever is left waits for a bank to scroll into place, see MainLayerHandler.handleScrollSettled
+            requestUpdate(SCROLL_SETTLE_TIMEOUT);
         }
-        resetCalls.forEach(DisplayResetState::process);
-        host.scheduleTask(this::processMidi, 30);
     }
     
     public void flushPendingCCs() {
@@ -148,6 +183,37 @@ public class MidiProcessor {
     }
     
     
+    /**
+     * Drains the transmit queue, invoked with every flush of the extension. Whatever exceeds the budget is sent on
+     * the following ticks.
+     */
+    public void flush() {
+        if (updateOnFlush) {
+            processUpdate();
+        }
+        if (transmitQueue.drain() && !drainPending) {
+            drainPending = true;
+            timerWheel.delay(this::drainQueue, TimerWheel.DEFAULT_TICK_TIME);
+        }
+    }
+    
+    private void drainQueue() {
+        drainPending = false;
+        flush();
+    }
+    
+    public MidiJournal getJournal() {
+        return journal;
+    }
+    
+    public DeviceShadow getDeviceShadow() {
+        return deviceShadow;
+    }
+    
+    public TransmitQueue getTransmitQueue() {
+        return transmitQueue;
+    }
+    
     public ControllerHost getHost() {
         return host;
     }
@@ -156,104 +222,134 @@ public class MidiProcessor {
         host.scheduleTask(action, delayTime);
     }
     
-    private void handleSysEx(final String data) {
-        if (!data.endsWith("f7")) {
+    private void registerSysExHandlers() {
+        registerHandler(CMD_ID_GENERAL, 0x2, 0, message -> sendSysExDirect(COMMAND_PING));
+        registerHandler(CMD_ID_GENERAL, 0x6, 2, message -> mixState.setTrackOffset(message.intValue(0)));
+        registerHandler(CMD_ID_GENERAL, 0x9, 2, message -> mixState.selectTrack(message.intValue(0)));
+        registerHandler(CMD_ID_GENERAL, 0xA, 0, message -> {
+            ensureInit();
+            mixState.toTransportMode();
+        });
+        registerHandler(CMD_ID_GENERAL, 0xC, 0, message -> handleConnected());
+        registerHandler(CMD_ID_GENERAL, 0xE, 10, this::handleVersionInfo);
+        registerHandler(CMD_ID_GENERAL, 0x10, 2, message -> apiVersion = message.value(0) << 7 | message.value(1));
+        
+        registerHandler(CMD_ID_PLUGIN, 0x1, 1, message -> {
+            ensureInit();
+            mixState.toPluginMode(message.value(0));
+        });
+        registerHandler(CMD_ID_PLUGIN, 0x4, 1, message -> mixState.navigatePluginBank(message.value(0)));
+        registerHandler(CMD_ID_PLUGIN, 0x7, 1, message -> mixState.selectPlugin(message.value(0)));
+        registerHandler(CMD_ID_PLUGIN, 0x9, 1, message -> mixState.setPluginLearnMode(message.value(0) > 0));
+        registerHandler(CMD_ID_PLUGIN, 0xB, 11, this::handleParameterRequest);
+        registerHandler(CMD_ID_PLUGIN, 0xC, 2, message -> mixState.activatePlugin(message.value(0), message.value(1)));
+        registerHandler(CMD_ID_PLUGIN, 0xD, 1, message -> mixState.lockDevice(message.value(0)));
+        registerHandler(CMD_ID_PLUGIN, 0x10, 1, message -> mixState.selectRemotePage(message.value(0)));
+        registerHandler(CMD_ID_PLUGIN, 0x11, 2, message -> mixState.confirmLearned(message.value(0), message.value(1)));
+        registerHandler(CMD_ID_PLUGIN, 0x12, 0, message -> mixState.toggleRemotePage());
+        
+        registerHandler(CMD_ID_MIXER, 0x1, 4, this::handleMixerUpdate);
+        registerHandler(CMD_ID_MIXER, 0x2, 1, message -> mixState.setTrackControl(message.value(0)));
+        registerHandler(CMD_ID_MIXER, 0x5, 1, message -> mixState.setMasterControl(message.value(0)));
+        registerHandler(CMD_ID_MIXER, 0x6, 2, message -> mixState.focusTrackToggle(message.intValue(0)));
+        registerHandler(CMD_ID_MIXER, 0x7, 1, message -> mixState.sendTrackNameRequest(message.value(0)));
+    }
+    
+    private void registerHandler(final int command, final int subCommand, final int dataLength,
+        final SysExHandler handler) {
+        final int index = handlerIndex(command, subCommand);
+        sysExHandlers[index] = handler;
+        sysExDataLengths[index] = dataLength;
+    }
+    
+    private static int handlerIndex(final int command, final int subCommand) {
+        if (command < CMD_ID_GENERAL || command > CMD_ID_MIXER || subCommand < 0 || subCommand >= MAX_SUB_COMMANDS) {
+            return -1;
+        }
+        return (command - CMD_ID_GENERAL) * MAX_SUB_COMMANDS + subCommand;
+    }
+    
+    void handleSysEx(final String data) {
+        if (!SysExMessage.hasRotoHeader(data)) {
+            return;
+        }
+        if (!incomingMessage.parse(data)) {
             RotoControlExtension.println("Illegal Sysex Received : %s", data);
             return;
         }
-        if ("f0002203020a02f7".equals(data)) {
-            midiOut.sendSysex(COMMAND_PING);
-        } else {
-            final int command = getSysExValue(0, data);
-            final int commandNum = getSysExValue(2, data);
-            handleRotoUpdate(command, commandNum, data);
+        journal.recordSysEx(MidiJournal.IN_SYSEX, incomingMessage.getBuffer(), incomingMessage.getLength());
+        final int index = handlerIndex(incomingMessage.getCommand(), incomingMessage.getSubCommand());
+        //RotoControlExtension.println("INCOMING = %s", incomingMessage);
+        if (index == -1 || sysExHandlers[index] == null) {
+            return;
+        }
+        if (incomingMessage.getDataLength() < sysExDataLengths[index]) {
+            RotoControlExtension.println("Short Sysex Received : %s", data);
+            return;
         }
+        sysExHandlers[index].handle(incomingMessage);
     }
     
-    private void handleRotoUpdate(final int command, final int commandNum, final String data) {
-        //RotoControlExtension.println("INCOMING = %s  => %02X // %02X    ", data, command, commandNum);
-        //        if (command != CMD_ID_PLUGIN && commandNum != 0xB) {
-        //            RotoControlExtension.println("Sys Ex = %s  => %s // %s", data, command, commandNum);
-        //        }
-        if (command == CMD_ID_GENERAL) {
-            switch (commandNum) {
-                case 0x6 -> mixState.setTrackOffset(getSysExIntValue(4, data));
-                case 0x9 -> mixState.selectTrack(getSysExIntValue(4, data));
-                case 0xA -> {
-                    ensureInit();
-                    mixState.toTransportMode();
-                }
-                case 0xC -> sendGeneralCommandDirect("0D");
-                case 0xE -> handleVersionInfo(data);
-            }
-        } else if (command == CMD_ID_PLUGIN) {
-            switch (commandNum) {
-                case 0x1 -> {
-                    ensureInit();
-                    mixState.toPluginMode(getSysExValue(4, data));
-                }
-                case 0x4 -> mixState.navigatePluginBank(getSysExValue(4, data));
-                case 0x7 -> mixState.selectPlugin(getSysExValue(4, data));
-                case 0x9 -> mixState.setPluginLearnMode(getSysExValue(4, data) > 0);
-                case 0xB -> mixState.activateParameter(ParameterSettings.fromData(data));
-                case 0xC -> mixState.activatePlugin(getSysExValue(4, data), getSysExValue(6, data));
-                case 0xD -> mixState.lockDevice(getSysExValue(4, data));
-                case 0x10 -> mixState.selectRemotePage(getSysExValue(4, data));
-                case 0x11 -> mixState.confirmLearned(getSysExValue(4, data), getSysExValue(6, data));
-                case 0x12 -> mixState.toggleRemotePage();
-            }
-            
-        } else if (command == CMD_ID_MIXER) {
-            switch (commandNum) {
-                case 0x1 -> handleMixerUpdate(data);
-                case 0x2 -> mixState.setTrackControl(getSysExValue(4, data));
-                case 0x5 -> mixState.setMasterControl(getSysExValue(4, data));
-                case 0x6 -> mixState.focusTrackToggle(getSysExIntValue(4, data));
-                case 0x7 -> mixState.sendTrackNameRequest(getSysExValue(4, data));
-            }
+    private void handleParameterRequest(final SysExMessage message) {
+        final ParameterSettings settings = ParameterSettings.fromData(message);
+        if (settings != null) {
+            mixState.activateParameter(settings);
         }
     }
     
-    private void handleVersionInfo(final String data) {
-        final int major = getSysExValue(4, data);
-        final int minor = getSysExValue(6, data);
-        final int patch = getSysExValue(8, data);
+    private void handleVersionInfo(final SysExMessage message) {
+        final int major = message.value(0);
+        final int minor = message.value(1);
+        final int patch = message.value(2);
         RotoControlExtension.println(
-            "Firmware Version %d.%d.%d   %s", major, minor, patch,
-            StringUtil.toAscii(data.substring(RCV_HEADER_OFFSET + 10, RCV_HEADER_OFFSET + 24)));
+            "Firmware Version %d.%d.%d   %s", major, minor, patch, message.asciiValue(3, 7));
         //        this.preferences.getVersion().set(version);
         //        this.preferences.getFwVersion()
-        //            .set("%d.%d.%d   %s".formatted(major, minor, patch,
-        //                StringUtil.toAscii(data.substring(RCV_HEADER_OFFSET + 10, RCV_HEADER_OFFSET + 24))
-        //            ));
+        //            .set("%d.%d.%d   %s".formatted(major, minor, patch, message.asciiValue(3, 7)));
     }
     
-    private void handleMixerUpdate(final String data) {
+    private void handleConnected() {
+        // the hardware (re)connected, it doesn't show anything sent before
+        deviceShadow.invalidate();
+        apiVersion = 0;
+        sendGeneralCommandDirect(0x0D);
+        sendGeneralCommandDirect(0x0F);
+    }
+    
+    /**
+     * @return true if the hardware takes SET TRACK DETAILS for a single track, available from SysEx API 1.5
+     */
+    public boolean supportsTrackSlotUpdates() {
+        return apiVersion >= (1 << 7 | 5);
+    }
+    
+    private void handleMixerUpdate(final SysExMessage message) {
         ensureInit();
-        mixState.setMixMode(
-            getSysExValue(4, data), //
-            getSysExValue(6, data), //
-            getSysExValue(8, data), getSysExValue(0xA, data));
+        mixState.setMixMode(message.value(0), message.value(1), message.value(2), message.value(3));
     }
     
     private void ensureInit() {
         if (!initialized) {
             initialized = true;
-            host.scheduleTask(this::processMidi, 50);
+            requestUpdate(INIT_UPDATE_DELAY);
         }
     }
     
-    private void handleMidiIn(final int status, final int data1, final int data2) {
+    void handleMidiIn(final int status, final int data1, final int data2) {
+        journal.recordShort(MidiJournal.IN_CC, status, data1, data2);
         if (status == 0xBF) {
-            RotoKnob knob = valueMatcherMap.get(data1);
-            if (knob != null) {
-                knob.setHighByteValue(data2);
-            } else {
-                knob = valueMatcherBase2Map.get(data1);
-                if (knob != null) {
-                    knob.setLowValue(data2);
-                } else {
-                    RotoControlExtension.println("FREE => %02X %02X %02X", status, data1, data2);
+            switch (ccTypes[data1]) {
+                case CC_KNOB_HIGH -> {
+                    deviceShadow.received(data1, data2);
+                    ccKnobs[data1].setHighByteValue(data2);
+                }
+                case CC_KNOB_LOW -> {
+                    deviceShadow.received(data1, data2);
+                    ccKnobs[data1].setLowValue(data2);
+                }
+                case CC_HARDWARE -> deviceShadow.invalidate(data1);
+                case CC_FREE -> {
+                    //RotoControlExtension.println("FREE => %02X %02X %02X", status, data1, data2);
                 }
             }
         } else {
@@ -265,7 +361,8 @@ public class MidiProcessor {
     public void initDaw(final String version) {
         //this.preferences = preferences;
         this.version = version;
-        midiOut.sendSysex(COMMAND_DAW_START);
+        deviceShadow.invalidate();
+        sendSysExDirect(COMMAND_DAW_START);
     }
     
     public void endTrackDetail() {
@@ -276,49 +373,78 @@ public class MidiProcessor {
         sendSysEx(END_PLUGIN_DETAIL_COMMAND);
     }
     
-    public void sendGeneralCommandDirect(final String code) {
-        midiOut.sendSysex(COMMAND_VALUE_GENERAL_DIR.formatted(code));
+    /**
+     * Hands out a pooled frame with header, command and sub command written. The frame is returned to the pool
+     * once it has been sent.
+     *
+     * @param command    command id
+     * @param subCommand sub command id
+     * @return frame ready for the payload
+     */
+    public SysExFrame frame(final int command, final int subCommand) {
+        final SysExFrame frame = framePool.isEmpty() ? new SysExFrame(this) : framePool.pop();
+        return frame.begin(command, subCommand);
+    }
+    
+    public void sendGeneralCommandDirect(final int code) {
+        final SysExFrame frame = frame(CMD_ID_GENERAL, code);
+        sendSysExDirect(frame.complete().toBytes());
+        framePool.push(frame);
     }
     
-    public void sendGeneralCommand(final String code, final int commandValue) {
-        final int sendValue = Math.min(127, Math.max(0, commandValue));
-        sendSysEx(COMMAND_VALUE_GENERAL.formatted(code, "%02X".formatted(sendValue)));
+    public void sendGeneralCommand(final int code, final int commandValue) {
+        frame(CMD_ID_GENERAL, code).value(Math.min(127, Math.max(0, commandValue))).send();
     }
     
-    public void sendIndexCommand(final String code, final int indexValue) {
-        final int highValue = (indexValue >> 7) & 0x7f;
-        final int lowValue = indexValue & 0x7F;
-        sendSysEx(COMMAND_VALUE_GENERAL.formatted(code, "%02X %02X".formatted(highValue, lowValue)));
+    public void sendIndexCommand(final int code, final int indexValue) {
+        frame(CMD_ID_GENERAL, code).value14(indexValue).send();
     }
     
-    public void sendMixCommand(final String code, final int commandValue) {
-        final int sendValue = Math.min(127, Math.max(0, commandValue));
-        sendSysEx(COMMAND_VALUE_MIX.formatted(code, "%02X".formatted(sendValue)));
+    public void sendMixCommand(final int code, final int commandValue) {
+        frame(CMD_ID_MIXER, code).value(Math.min(127, Math.max(0, commandValue))).send();
     }
     
-    public void sendPluginCommand(final String code, final int commandValue) {
+    public void sendPluginCommand(final int code, final int commandValue) {
         if (commandValue >= 0 && commandValue <= 0x7F) {
-            sendSysEx(COMMAND_VALUE_PLUGIN.formatted(code, "%02X".formatted(commandValue)));
+            frame(CMD_ID_PLUGIN, code).value(commandValue).send();
         }
     }
     
     public void sendPluginSelect(final int pluginIndex, final int pageIndex, final boolean force) {
         if (pluginIndex >= 0 && pluginIndex <= 0x7F) {
-            sendSysEx(COMMAND_VALUE_PLUGIN_UPDATE.formatted(pluginIndex, pageIndex, force ? 1 : 0));
+            frame(CMD_ID_PLUGIN, 0x08).value(pluginIndex).value(pageIndex).value(force).sendState(0);
+        }
+    }
+    
+    public void sendDisplayValue(final int type, final int index, final String value) {
+        frame(CMD_ID_GENERAL, 0x0F).value(type).value(index).name(value).sendState(type << 7 | index);
+    }
+    
+    void sendSysEx(final SysExFrame frame, final int key) {
+        if (initialized) {
+            transmitQueue.sendSysEx(frame.toBytes(), key);
         }
+        framePool.push(frame);
     }
     
-    public void sendSysEx(final String sysExData) {
+    public void sendSysEx(final byte[] sysExData) {
         if (!initialized) {
             return;
         }
         //RotoControlExtension.println("   SEND: %s", sysExData);
+        transmitQueue.sendSysEx(sysExData);
+    }
+    
+    private void sendSysExDirect(final byte[] sysExData) {
+        journal.recordSysEx(MidiJournal.OUT_SYSEX, sysExData, sysExData.length);
         midiOut.sendSysex(sysExData);
     }
     
     public void setButtonValueState(final int ccNr, final int value) {
         //RotoControlExtension.println(" BCC -> %02X %02X", ccNr, value);
-        midiOut.sendMidi(0xBF, ccNr, value);
+        if (deviceShadow.update(ccNr, value)) {
+            transmitQueue.sendMidi(0xBF, ccNr, value);
+        }
     }
     
     
@@ -332,32 +458,16 @@ public class MidiProcessor {
     
     private void sendCCHiResNow(final int ccNr, final int highValue, final int lowValue) {
         pendingCCs.remove(ccNr);
-        midiOut.sendMidi(0xBF, ccNr, highValue);
-        midiOut.sendMidi(0xBF, ccNr + 0x20, lowValue);
-    }
-    
-    public static int getSysExValue(final int offset, final String data) {
-        final String valueStr = data.substring(RCV_HEADER_OFFSET + offset, RCV_HEADER_OFFSET + offset + 2);
-        return Integer.parseInt(valueStr, 16);
-    }
-    
-    public static int getSysExIntValue(final int offset, final String data) {
-        final int highValue = getSysExValue(offset, data);
-        final int lowValue = getSysExValue(offset + 2, data);
-        return (lowValue | (highValue << 7));
-    }
-    
-    
-    public static String getSysExBlock(final int offset, final int blocks, final String data) {
-        final int beginIndex = RCV_HEADER_OFFSET + offset;
-        final int endIndex = RCV_HEADER_OFFSET + offset + blocks * 2;
-        if (endIndex < data.length()) {
-            return data.substring(beginIndex, endIndex);
+        if (deviceShadow.update(ccNr, highValue, lowValue)) {
+            transmitQueue.sendMidi(0xBF, ccNr, highValue);
+            transmitQueue.sendMidi(0xBF, ccNr + 0x20, lowValue);
         }
-        return null;
     }
     
     public void notifyDisplayCall(final int index, final Runnable resetCallback) {
-        resetCalls.get(index).set(resetCallback);
+        if (displayResets[index] != null) {
+            displayResets[index].cancel();
+        }
+        displayResets[index] = timerWheel.delay(resetCallback, DISPLAY_RESET_TIME);
     }
 }
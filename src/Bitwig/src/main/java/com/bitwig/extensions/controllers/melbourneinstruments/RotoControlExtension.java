@@ -1,5 +1,9 @@
 package com.bitwig.extensions.controllers.melbourneinstruments;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -15,6 +19,9 @@ public class RotoControlExtension extends ControllerExtension {
 
     private final RotoControlExtensionDefinition definition;
     private HardwareSurface surface;
+    private MidiProcessor midiProcessor;
+    private MainLayerHandler mainLayerHandler;
+    private RotoPreferences preferences;
 
     public static void println(final String format, final Object... args) {
         if (debugHost != null) {
@@ -43,20 +50,46 @@ public class RotoControlExtension extends ControllerExtension {
     public void init() {
         debugHost = getHost();
         final Context diContext = new Context(this);
-        final MidiProcessor midiProcessor = diContext.getService(MidiProcessor.class);
+        midiProcessor = diContext.getService(MidiProcessor.class);
         surface = diContext.getService(HardwareSurface.class);
-        //final RotoPreferences preferences = diContext.getService(RotoPreferences.class);
+        mainLayerHandler = diContext.getService(MainLayerHandler.class);
+        preferences = diContext.getService(RotoPreferences.class);
+        preferences.getVersion().set(this.definition.getVersion());
+        preferences.getJournalEnabled().addValueObserver(midiProcessor.getJournal()::setEnabled);
+        preferences.getDumpJournal().addSignalObserver(this::dumpJournal);
         midiProcessor.initDaw("%s   %s".formatted(this.definition.getVersion(), this.definition.getVersionDate()));
     }
 
     @Override
     public void exit() {
-        // Nothing right now
+        mainLayerHandler.shutdown();
+        // diagnostics output, only wanted while the journal is recorded
+        if (midiProcessor.getJournal().isEnabled()) {
+            getHost().println("Controller updates: " + mainLayerHandler.getUpdateStatistics());
+            dumpJournal();
+        }
+    }
+
+    private void dumpJournal() {
+        final String journalFile = preferences.getJournalFile().get();
+        try {
+            final Path file = Path.of(journalFile);
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            final int entries = midiProcessor.getJournal().dump(file);
+            getHost().println("MIDI journal: %d entries written to %s".formatted(entries, journalFile));
+        }
+        catch (final IOException | InvalidPathException exception) {
+            getHost().println("MIDI journal could not be written: " + exception.getMessage());
+        }
     }
 
     @Override
     public void flush() {
+        mainLayerHandler.flush();
         surface.updateHardware();
+        midiProcessor.flush();
     }
 
 }
@@ -1,19 +1,35 @@
 package com.bitwig.extensions.controllers.melbourneinstruments;
 
+import java.nio.file.Path;
+
 import com.bitwig.extension.controller.api.ControllerHost;
 import com.bitwig.extension.controller.api.Preferences;
+import com.bitwig.extension.controller.api.SettableBooleanValue;
 import com.bitwig.extension.controller.api.SettableStringValue;
+import com.bitwig.extension.controller.api.Signal;
+import com.bitwig.extensions.framework.di.Component;
 
+@Component
 public class RotoPreferences {
 
+    private static final String DIAGNOSTICS = "Diagnostics";
+
     private final SettableStringValue version;
     private final SettableStringValue fwVersion;
+    private final SettableBooleanValue journalEnabled;
+    private final SettableStringValue journalFile;
+    private final Signal dumpJournal;
 
     public RotoPreferences(final ControllerHost host) {
         final Preferences preferences = host.getPreferences(); // THIS
 
         version = preferences.getStringSetting("Software", "Version", 30, "");
         fwVersion = preferences.getStringSetting("Firmware", "Version", 30, "");
+        journalEnabled = preferences.getBooleanSetting("Record MIDI journal", DIAGNOSTICS, false);
+        journalFile = preferences.getStringSetting("Journal file", DIAGNOSTICS, 200,
+            Path.of(System.getProperty("user.home"), ".roto-control", "midi-journal.rcj").toString());
+        journalFile.markInterested();
+        dumpJournal = preferences.getSignalSetting("Write journal", DIAGNOSTICS, "Dump");
     }
 
 
@@ -24,4 +40,16 @@ public class RotoPreferences {
     public SettableStringValue getVersion() {
         return version;
     }
+
+    public SettableBooleanValue getJournalEnabled() {
+        return journalEnabled;
+    }
+
+    public SettableStringValue getJournalFile() {
+        return journalFile;
+    }
+
+    public Signal getDumpJournal() {
+        return dumpJournal;
+    }
 }
@@ -11,6 +11,7 @@ import com.bitwig.extension.controller.api.PinnableCursorDevice;
 import com.bitwig.extension.controller.api.Track;
 import com.bitwig.extension.controller.api.TrackBank;
 import com.bitwig.extension.controller.api.Transport;
+import com.bitwig.extensions.controllers.melbourneinstruments.states.ProjectTrackMirror;
 import com.bitwig.extensions.framework.di.Component;
 import com.bitwig.extensions.framework.values.BasicIntegerValue;
 import com.bitwig.extensions.framework.values.BooleanValueObject;
@@ -20,6 +21,7 @@ public class RotoViewControl {
     
     private final Track rootTrack;
     private final TrackBank trackBank;
+    private final TrackBank projectTrackBank;
     private final CursorTrack cursorTrack;
     private final PinnableCursorDevice cursorDevice;
     private final DeviceBank deviceBank;
@@ -40,6 +42,7 @@ public class RotoViewControl {
     public RotoViewControl(final ControllerHost host, final Transport transport) {
         rootTrack = host.getProject().getRootTrackGroup();
         trackBank = host.createMainTrackBank(8, 1, 1);
+        projectTrackBank = host.createMainTrackBank(ProjectTrackMirror.SIZE, 0, 0);
         effectBank = host.createEffectTrackBank(8, 1, 1);
         masterTrack = host.createMasterTrack(1);
         cursorTrack = host.createCursorTrack(14, 1);
@@ -131,6 +134,13 @@ public class RotoViewControl {
         return trackBank;
     }
     
+    /**
+     * @return main track bank covering the project, only used to mirror track metadata
+     */
+    public TrackBank getProjectTrackBank() {
+        return projectTrackBank;
+    }
+    
     public CursorTrack getCursorTrack() {
         return cursorTrack;
     }
@@ -3,8 +3,6 @@ package com.bitwig.extensions.controllers.melbourneinstruments;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
-import java.util.List;
 
 public class StringUtil {
     private static final char[] SPECIALS = {
@@ -24,17 +22,33 @@ public class StringUtil {
         return str;
     }
     
-    public static String toSysExName(final String name) {
-        final StringBuilder cmd = new StringBuilder();
-        final String text = toAsciiDisplay(name, 13);
-        for (int i = 0; i < 13; i++) {
-            if (i < text.length()) {
-                cmd.append("%02X ".formatted((int) text.charAt(i)));
+    /**
+     * Writes the ASCII display representation of name into target, stopping after maxLen source characters
+     * (replacements may exceed this by one) and never writing more than fieldLength bytes.
+     *
+     * @return number of bytes written
+     */
+    public static int toAsciiBytes(final String name, final int maxLen, final byte[] target, final int offset,
+        final int fieldLength) {
+        if (name == null) {
+            return 0;
+        }
+        int written = 0;
+        for (int i = 0; i < name.length() && written < maxLen; i++) {
+            final char c = name.charAt(i);
+            if (c < 128) {
+                target[offset + written++] = (byte) c;
             } else {
-                cmd.append("00 ");
+                final int replacement = getReplace(c);
+                if (replacement >= 0) {
+                    final String replace = REPLACE[replacement];
+                    for (int j = 0; j < replace.length() && written < fieldLength; j++) {
+                        target[offset + written++] = (byte) replace.charAt(j);
+                    }
+                }
             }
         }
-        return cmd.toString();
+        return written;
     }
     
     public static String toAsciiDisplay(final String name, final int maxLen) {
@@ -68,20 +82,6 @@ public class StringUtil {
         return -1;
     }
     
-    public static String nameToSysEx(final String name) {
-        final StringBuilder cmd = new StringBuilder();
-        final String text = StringUtil.toAsciiDisplay(name, 12);
-        for (int i = 0; i < 13; i++) {
-            if (i < text.length()) {
-                cmd.append("%02X ".formatted((int) text.charAt(i)));
-            } else {
-                cmd.append("00 ");
-            }
-        }
-        return cmd.toString();
-    }
-    
-    
     public static byte[] getPluginHash(final String pluginName, final int hashSize) {
         try {
             final byte[] inputBytes = pluginName.getBytes(StandardCharsets.UTF_8);
@@ -102,23 +102,4 @@ public class StringUtil {
         return (byte) (hashBytes[index] & 0x7f);
     }
     
-    public static List<String> createHash(final String name, final int size) {
-        final byte[] hashValue = getPluginHash(name, size);
-        final ArrayList<String> list = new ArrayList<String>();
-        
-        for (int i = 0; i < size; i++) {
-            list.add(StringUtil.toHexString(hashValue[i]));
-        }
-        return list;
-    }
-    
-    public static String toAscii(final String data) {
-        final StringBuilder output = new StringBuilder();
-        for (int i = 0; i < data.length(); i += 2) {
-            final String str = data.substring(i, i + 2);
-            output.append((char) Integer.parseInt(str, 16));
-        }
-        return output.toString();
-    }
-    
 }
@@ -0,0 +1,117 @@
+package com.bitwig.extensions.controllers.melbourneinstruments;
+
+import java.util.Arrays;
+
+/**
+ * Reusable builder for outgoing ROTO-CONTROL SysEx messages. Frames are handed out by
+ * {@link MidiProcessor#frame(int, int)} with the header, command and sub command already written, filled with the
+ * typed writers below and finished with {@link #send()}, which returns the frame to the pool of the processor.
+ * <p>
+ * Only the builders are pooled. Each sent frame is still copied into a byte array of its exact length, because the
+ * array is handed on to the transmit queue and {@link com.bitwig.extension.controller.api.MidiOut#sendSysex(byte[])},
+ * which may keep it. That is one allocation of the frame size plus the array header per frame, 48 bytes for a TRACK
+ * DETAILS frame.
+ */
+public class SysExFrame {
+    public static final int NAME_LENGTH = 13;
+    private static final byte[] HEADER = {(byte) 0xF0, 0x00, 0x22, 0x03, 0x02};
+    private static final int MAX_FRAME_SIZE = 512;
+
+    private final MidiProcessor midiProcessor;
+    private final byte[] buffer = new byte[MAX_FRAME_SIZE];
+    private int length;
+
+    SysExFrame(final MidiProcessor midiProcessor) {
+        this.midiProcessor = midiProcessor;
+    }
+
+    SysExFrame begin(final int command, final int subCommand) {
+        System.arraycopy(HEADER, 0, buffer, 0, HEADER.length);
+        length = HEADER.length;
+        return value(command).value(subCommand);
+    }
+
+    /**
+     * Writes a single 7-bit value.
+     */
+    public SysExFrame value(final int value) {
+        buffer[length++] = (byte) (value & 0x7F);
+        return this;
+    }
+
+    public SysExFrame value(final boolean value) {
+        return value(value ? 1 : 0);
+    }
+
+    /**
+     * Writes a 14-bit value as high and low 7-bit bytes.
+     */
+    public SysExFrame value14(final int value) {
+        buffer[length++] = (byte) ((value >> 7) & 0x7F);
+        buffer[length++] = (byte) (value & 0x7F);
+        return this;
+    }
+
+    /**
+     * Writes already 7-bit safe data, i.e. hashes.
+     */
+    public SysExFrame bytes(final byte[] data) {
+        System.arraycopy(data, 0, buffer, length, data.length);
+        length += data.length;
+        return this;
+    }
+
+    /**
+     * Writes a zero padded name field of {@link #NAME_LENGTH} bytes using up to 12 characters of the given text.
+     */
+    public SysExFrame name(final String text) {
+        return name(text, NAME_LENGTH - 1);
+    }
+
+    /**
+     * Writes a zero padded name field of {@link #NAME_LENGTH} bytes using up to maxChars characters of the text.
+     */
+    public SysExFrame name(final String text, final int maxChars) {
+        final int written = StringUtil.toAsciiBytes(text, maxChars, buffer, length, NAME_LENGTH);
+        Arrays.fill(buffer, length + written, length + NAME_LENGTH, (byte) 0);
+        length += NAME_LENGTH;
+        return this;
+    }
+
+    SysExFrame complete() {
+        buffer[length++] = (byte) 0xF7;
+        return this;
+    }
+
+    /**
+     * @return a new array with the completed frame
+     */
+    byte[] toBytes() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    public void send() {
+        midiProcessor.sendSysEx(complete(), TransmitQueue.NO_KEY);
+    }
+    
+    /**
+     * Sends the frame as a state update for the given slot. A frame with the same command and sub command for the
+     * same slot that has not been sent yet is replaced.
+     */
+    public void sendState(final int slot) {
+        midiProcessor.sendSysEx(complete(), TransmitQueue.toKey(buffer[HEADER.length], buffer[HEADER.length + 1], slot));
+    }
+
+    public static byte[] of(final int command, final int subCommand, final int... values) {
+        final byte[] data = new byte[HEADER.length + 3 + values.length];
+        System.arraycopy(HEADER, 0, data, 0, HEADER.length);
+        int index = HEADER.length;
+        data[index++] = (byte) command;
+        data[index++] = (byte) subCommand;
+        for (final int value : values) {
+            data[index++] = (byte) (value & 0x7F);
+        }
+        data[index] = (byte) 0xF7;
+        return data;
+    }
+}
@@ -0,0 +1,130 @@
+package com.bitwig.extensions.controllers.melbourneinstruments;
+
+import java.util.Objects;
+
+/**
+ * Reusable view on an incoming ROTO-CONTROL SysEx message. The hex string delivered by the host is decoded once
+ * into a byte buffer, data accessors are indexed relative to the first byte following the sub command. Reading
+ * beyond the data of the message fails instead of returning what a previous message left in the buffer.
+ */
+public class SysExMessage {
+    private static final int[] HEADER = {0xF0, 0x00, 0x22, 0x03, 0x02};
+    private static final int DATA_OFFSET = HEADER.length + 2;
+    private static final int MAX_MESSAGE_SIZE = 512;
+
+    private final byte[] buffer = new byte[MAX_MESSAGE_SIZE];
+    private int length;
+
+    /**
+     * @param data hex string as received from the host
+     * @return true if the data starts with the ROTO-CONTROL header, other SysEx on the port is not meant for us
+     */
+    public static boolean hasRotoHeader(final String data) {
+        if (data.length() < HEADER.length * 2) {
+            return false;
+        }
+        for (int i = 0; i < HEADER.length; i++) {
+            final int high = Character.digit(data.charAt(i * 2), 16);
+            final int low = Character.digit(data.charAt(i * 2 + 1), 16);
+            if ((high << 4 | low) != HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the hex string into the buffer.
+     *
+     * @param data hex string as received from the host
+     * @return true if the data is a complete ROTO-CONTROL message
+     */
+    public boolean parse(final String data) {
+        length = 0;
+        final int size = data.length() / 2;
+        if (size > MAX_MESSAGE_SIZE || size < DATA_OFFSET + 1) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            final int high = Character.digit(data.charAt(i * 2), 16);
+            final int low = Character.digit(data.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return false;
+            }
+            buffer[i] = (byte) ((high << 4) | low);
+        }
+        length = size;
+        for (int i = 0; i < HEADER.length; i++) {
+            if ((buffer[i] & 0xFF) != HEADER[i]) {
+                return false;
+            }
+        }
+        return (buffer[length - 1] & 0xFF) == 0xF7;
+    }
+
+    byte[] getBuffer() {
+        return buffer;
+    }
+    
+    int getLength() {
+        return length;
+    }
+    
+    public int getCommand() {
+        return buffer[HEADER.length];
+    }
+
+    public int getSubCommand() {
+        return buffer[HEADER.length + 1];
+    }
+
+    /**
+     * @return number of data bytes between sub command and the closing F7
+     */
+    public int getDataLength() {
+        return Math.max(0, length - DATA_OFFSET - 1);
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException if the message has no data byte at the index
+     */
+    public int value(final int index) {
+        Objects.checkIndex(index, getDataLength());
+        return buffer[DATA_OFFSET + index] & 0x7F;
+    }
+
+    /**
+     * Reads a 14-bit value sent as high and low byte.
+     */
+    public int intValue(final int index) {
+        return (value(index) << 7) | value(index + 1);
+    }
+
+    /**
+     * Packs up to 9 consecutive 7-bit values into a long, used for parameter hashes.
+     */
+    public long longValue(final int index, final int count) {
+        long result = 0;
+        for (int i = 0; i < count; i++) {
+            result = (result << 7) | value(index + i);
+        }
+        return result;
+    }
+
+    public String asciiValue(final int index, final int count) {
+        final StringBuilder output = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            output.append((char) value(index + i));
+        }
+        return output.toString();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder output = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            output.append("%02X ".formatted(buffer[i] & 0xFF));
+        }
+        return output.toString();
+    }
+}
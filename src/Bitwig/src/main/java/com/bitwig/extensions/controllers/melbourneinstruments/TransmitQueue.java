@@ -0,0 +1,308 @@
+package com.bitwig.extensions.controllers.melbourneinstruments;
+
+import com.bitwig.extension.controller.api.MidiOut;
+import com.bitwig.extensions.controllers.melbourneinstruments.device.LongIntHashMap;
+
+/**
+ * Outgoing MIDI is queued in two lanes and drained within a byte budget. Knob positions and LED states go through the
+ * high priority lane and are never held up by bulk SysEx such as track or plugin details. A fence keeps short messages
+ * queued after it from overtaking SysEx queued before it, i.e. knob positions that belong to a mode change.
+ * <p>
+ * SysEx sent with a coalescing key is a pure state update, an unsent frame with the same key is replaced in place. Any
+ * frame without a key ends coalescing for everything queued before it, so sequences keep their order.
+ * <p>
+ * Both lanes are ring buffers of primitive arrays. Pending keys map to the sequence number of their queued frame, so
+ * queueing, coalescing and sending don't allocate.
+ */
+public class TransmitQueue {
+    public static final int DEFAULT_BYTES_PER_MS = 32;
+    public static final int NO_KEY = -1;
+    private static final int MAX_BURST_MS = 10;
+    private static final int MIN_BURST = 1024;
+    private static final int SHORT_MESSAGE_SIZE = 3;
+    private static final long RATE_WINDOW = 1_000_000_000L;
+    // more distinct pending keys than this are queued without coalescing
+    private static final int MAX_COALESCING_KEYS = 256;
+
+    public enum Lane {
+        HIGH,
+        BULK
+    }
+
+    public static class LaneCounters {
+        private int maxDepth;
+        private long sent;
+        private long totalWait;
+        private long maxWait;
+
+        private void enqueued(final int depth) {
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        private void sent(final long waitTime) {
+            sent++;
+            totalWait += waitTime;
+            maxWait = Math.max(maxWait, waitTime);
+        }
+
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        public long getSent() {
+            return sent;
+        }
+
+        public double getAverageWaitMs() {
+            return sent == 0 ? 0 : totalWait / (sent * 1_000_000.0);
+        }
+
+        public double getMaxWaitMs() {
+            return maxWait / 1_000_000.0;
+        }
+
+        public void reset() {
+            maxDepth = 0;
+            sent = 0;
+            totalWait = 0;
+            maxWait = 0;
+        }
+
+        @Override
+        public String toString() {
+            return "sent=%d maxDepth=%d avgWait=%.2fms maxWait=%.2fms".formatted(sent, maxDepth, getAverageWaitMs(),
+                getMaxWaitMs());
+        }
+    }
+
+    private final MidiOut midiOut;
+    private final MidiJournal journal;
+    private int bytesPerMs = DEFAULT_BYTES_PER_MS;
+    private double budget;
+    private long lastDrainTime = System.nanoTime();
+
+    private int[] shortMessages = new int[256];
+    private long[] shortTimes = new long[256];
+    private long[] shortFences = new long[256];
+    private int shortHead;
+    private int shortCount;
+
+    private byte[][] bulkData = new byte[64][];
+    private long[] bulkTimes = new long[64];
+    private int[] bulkKeys = new int[64];
+    private int bulkHead;
+    private int bulkCount;
+    // coalescing key to the sequence number of its unsent frame, within Integer.MAX_VALUE
+    private final LongIntHashMap coalescingEntries = new LongIntHashMap(MAX_COALESCING_KEYS);
+    private long coalesced;
+    private int coalescedInWindow;
+    private long windowStart = System.nanoTime();
+    private double coalescedPerSecond;
+    private long bulkEnqueued;
+    private long bulkSent;
+    private long fence;
+
+    private final LaneCounters highCounters = new LaneCounters();
+    private final LaneCounters bulkCounters = new LaneCounters();
+
+    public TransmitQueue(final MidiOut midiOut, final MidiJournal journal) {
+        this.midiOut = midiOut;
+        this.journal = journal;
+        this.budget = maxBudget();
+    }
+
+    public void setBytesPerMs(final int bytesPerMs) {
+        this.bytesPerMs = Math.max(1, bytesPerMs);
+    }
+
+    public int getBytesPerMs() {
+        return bytesPerMs;
+    }
+
+    public void sendMidi(final int status, final int data1, final int data2) {
+        if (shortCount == shortMessages.length) {
+            growShortLane();
+        }
+        final int index = (shortHead + shortCount) & (shortMessages.length - 1);
+        shortMessages[index] = (status << 16) | (data1 << 8) | data2;
+        shortTimes[index] = System.nanoTime();
+        shortFences[index] = fence;
+        shortCount++;
+        highCounters.enqueued(shortCount);
+    }
+
+    public void sendSysEx(final byte[] data) {
+        sendSysEx(data, NO_KEY);
+    }
+
+    /**
+     * @param data SysEx data
+     * @param key  coalescing key, frames with the same key replace each other while unsent, or {@link #NO_KEY}
+     */
+    public void sendSysEx(final byte[] data, final int key) {
+        if (key == NO_KEY) {
+            coalescingEntries.clear();
+        } else {
+            final int pending = coalescingEntries.get(key);
+            if (pending != LongIntHashMap.NO_VALUE) {
+                final int offset = (pending - sequenceValue(bulkSent)) & Integer.MAX_VALUE;
+                bulkData[(bulkHead + offset) & (bulkData.length - 1)] = data;
+                coalesced++;
+                coalescedInWindow++;
+                return;
+            }
+        }
+        if (bulkCount == bulkData.length) {
+            growBulkLane();
+        }
+        final int index = (bulkHead + bulkCount) & (bulkData.length - 1);
+        bulkData[index] = data;
+        bulkTimes[index] = System.nanoTime();
+        bulkKeys[index] = key;
+        if (key != NO_KEY && coalescingEntries.size() < MAX_COALESCING_KEYS) {
+            coalescingEntries.put(key, sequenceValue(bulkEnqueued));
+        }
+        bulkCount++;
+        bulkEnqueued++;
+        bulkCounters.enqueued(bulkCount);
+    }
+
+    private static int sequenceValue(final long sequence) {
+        return (int) (sequence & Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a coalescing key from command, sub command and a slot within that command.
+     */
+    public static int toKey(final int command, final int subCommand, final int slot) {
+        return (command << 24) | (subCommand << 16) | (slot & 0xFFFF);
+    }
+
+    /**
+     * Short messages queued from now on are only sent after all SysEx queued up to now.
+     */
+    public void fence() {
+        fence = bulkEnqueued;
+    }
+
+    public boolean isEmpty() {
+        return shortCount == 0 && bulkCount == 0;
+    }
+
+    /**
+     * Sends as much as the budget accumulated since the last drain allows, high priority lane first.
+     *
+     * @return true if messages are left in the queue
+     */
+    public boolean drain() {
+        final long now = System.nanoTime();
+        if (now - windowStart >= RATE_WINDOW) {
+            coalescedPerSecond = coalescedInWindow * 1_000_000_000.0 / (now - windowStart);
+            coalescedInWindow = 0;
+            windowStart = now;
+        }
+        budget = Math.min(maxBudget(), budget + (now - lastDrainTime) * bytesPerMs / 1_000_000.0);
+        lastDrainTime = now;
+        while (budget > 0 && !isEmpty()) {
+            if (shortCount > 0 && shortFences[shortHead] <= bulkSent) {
+                sendNextShort(now);
+            } else if (bulkCount > 0) {
+                sendNextBulk(now);
+            } else {
+                break;
+            }
+        }
+        return !isEmpty();
+    }
+
+    private void sendNextShort(final long now) {
+        final int message = shortMessages[shortHead];
+        highCounters.sent(now - shortTimes[shortHead]);
+        shortHead = (shortHead + 1) & (shortMessages.length - 1);
+        shortCount--;
+        budget -= SHORT_MESSAGE_SIZE;
+        journal.recordShort(MidiJournal.OUT_CC, message >> 16, (message >> 8) & 0xFF, message & 0xFF);
+        midiOut.sendMidi(message >> 16, (message >> 8) & 0xFF, message & 0xFF);
+    }
+
+    private void sendNextBulk(final long now) {
+        final byte[] data = bulkData[bulkHead];
+        final int key = bulkKeys[bulkHead];
+        if (key != NO_KEY && coalescingEntries.get(key) == sequenceValue(bulkSent)) {
+            coalescingEntries.remove(key);
+        }
+        bulkCounters.sent(now - bulkTimes[bulkHead]);
+        bulkData[bulkHead] = null;
+        bulkHead = (bulkHead + 1) & (bulkData.length - 1);
+        bulkCount--;
+        bulkSent++;
+        budget -= data.length;
+        journal.recordSysEx(MidiJournal.OUT_SYSEX, data, data.length);
+        midiOut.sendSysex(data);
+    }
+
+    private double maxBudget() {
+        return Math.max(MIN_BURST, bytesPerMs * MAX_BURST_MS);
+    }
+
+    private void growShortLane() {
+        final int size = shortMessages.length;
+        final int[] messages = new int[size * 2];
+        final long[] times = new long[size * 2];
+        final long[] fences = new long[size * 2];
+        for (int i = 0; i < shortCount; i++) {
+            final int index = (shortHead + i) & (size - 1);
+            messages[i] = shortMessages[index];
+            times[i] = shortTimes[index];
+            fences[i] = shortFences[index];
+        }
+        shortMessages = messages;
+        shortTimes = times;
+        shortFences = fences;
+        shortHead = 0;
+    }
+
+    private void growBulkLane() {
+        final int size = bulkData.length;
+        final byte[][] data = new byte[size * 2][];
+        final long[] times = new long[size * 2];
+        final int[] keys = new int[size * 2];
+        for (int i = 0; i < bulkCount; i++) {
+            final int index = (bulkHead + i) & (size - 1);
+            data[i] = bulkData[index];
+            times[i] = bulkTimes[index];
+            keys[i] = bulkKeys[index];
+        }
+        bulkData = data;
+        bulkTimes = times;
+        bulkKeys = keys;
+        bulkHead = 0;
+    }
+
+    public int getDepth(final Lane lane) {
+        return lane == Lane.HIGH ? shortCount : bulkCount;
+    }
+
+    public LaneCounters getCounters(final Lane lane) {
+        return lane == Lane.HIGH ? highCounters : bulkCounters;
+    }
+
+    /**
+     * @return number of frames that have been replaced by a newer frame before being sent
+     */
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * @return frames saved by coalescing per second, measured over the last full second
+     */
+    public double getCoalescedPerSecond() {
+        return coalescedPerSecond;
+    }
+
+    public String getStatistics() {
+        return "HIGH depth=%d %s | BULK depth=%d %s coalesced=%d (%.1f/s)".formatted(shortCount, highCounters,
+            bulkCount, bulkCounters, coalesced, coalescedPerSecond);
+    }
+}
@@ -0,0 +1,120 @@
+package com.bitwig.extensions.controllers.melbourneinstruments;
+
+import java.util.function.Consumer;
+
+/**
+ * Collects the updates that need to be sent to the controller as a bit mask and executes them in a fixed order. An
+ * update that can't be sent yet is deferred to the next pass, an update that depends on a deferred one is deferred
+ * along with it, so i.e. the controls are never refreshed before the states they belong to.
+ * <p>
+ * Counts how often each update was requested against how often it was actually executed, which shows how well
+ * requests are coalesced.
+ */
+public class UpdatePlanner {
+
+    public enum DeferReason {
+        SCROLL_PENDING,
+        DEPENDENCY
+    }
+
+    private static final UpdateType[] ORDER = {
+        UpdateType.MIXER_MASTER, UpdateType.MIXER_MAIN, UpdateType.SENDS_COUNT, UpdateType.PLUGIN,
+        UpdateType.SELECTION, UpdateType.UPDATE_CONTROLS
+    };
+    private static final int[] DEPENDENCIES = new int[UpdateType.values().length];
+
+    static {
+        DEPENDENCIES[UpdateType.UPDATE_CONTROLS.ordinal()] =
+            bit(UpdateType.MIXER_MASTER) | bit(UpdateType.MIXER_MAIN) | bit(UpdateType.PLUGIN);
+    }
+
+    private int pending;
+    private int deferred;
+    private final long[] requested = new long[UpdateType.values().length];
+    private final long[] executed = new long[UpdateType.values().length];
+    private final long[] deferrals = new long[DeferReason.values().length];
+
+    private static int bit(final UpdateType type) {
+        return 1 << type.ordinal();
+    }
+
+    public void request(final UpdateType type) {
+        requested[type.ordinal()]++;
+        pending |= bit(type);
+    }
+
+    public void request(final UpdateType type1, final UpdateType type2) {
+        request(type1);
+        request(type2);
+    }
+
+    public void request(final UpdateType type1, final UpdateType type2, final UpdateType type3) {
+        request(type1);
+        request(type2);
+        request(type3);
+    }
+
+    public boolean hasPending() {
+        return pending != 0;
+    }
+
+    public boolean isPending(final UpdateType type) {
+        return (pending & bit(type)) != 0;
+    }
+
+    /**
+     * Moves an update to the next pass. Called from within {@link #process(Consumer)}, if the update is still due in
+     * the current pass it is skipped.
+     */
+    public void defer(final UpdateType type, final DeferReason reason) {
+        pending &= ~bit(type);
+        deferred |= bit(type);
+        deferrals[reason.ordinal()]++;
+    }
+
+    /**
+     * Executes the pending updates in order. Updates requested while processing are executed in this pass if they
+     * come later in the order, otherwise they are dropped, deferred updates are pending afterwards.
+     */
+    public void process(final Consumer<UpdateType> executor) {
+        for (final UpdateType type : ORDER) {
+            final int typeBit = bit(type);
+            if ((pending & typeBit) == 0) {
+                continue;
+            }
+            if ((DEPENDENCIES[type.ordinal()] & deferred) != 0) {
+                defer(type, DeferReason.DEPENDENCY);
+                continue;
+            }
+            executor.accept(type);
+            if ((deferred & typeBit) == 0) {
+                executed[type.ordinal()]++;
+            }
+        }
+        pending = deferred;
+        deferred = 0;
+    }
+
+    public long getRequested(final UpdateType type) {
+        return requested[type.ordinal()];
+    }
+
+    public long getExecuted(final UpdateType type) {
+        return executed[type.ordinal()];
+    }
+
+    public long getDeferrals(final DeferReason reason) {
+        return deferrals[reason.ordinal()];
+    }
+
+    public String getStatistics() {
+        final StringBuilder sb = new StringBuilder("requested/executed");
+        for (final UpdateType type : ORDER) {
+            sb.append(" %s=%d/%d".formatted(type, getRequested(type), getExecuted(type)));
+        }
+        for (final DeferReason reason : DeferReason.values()) {
+            sb.append(" deferred %s=%d".formatted(reason, getDeferrals(reason)));
+        }
+        return sb.toString();
+    }
+}
@@ -1,6 +1,5 @@
 package com.bitwig.extensions.controllers.melbourneinstruments.binding;
 
-import com.bitwig.extensions.controllers.melbourneinstruments.StringUtil;
 import com.bitwig.extensions.controllers.melbourneinstruments.control.RotoButton;
 import com.bitwig.extensions.controllers.melbourneinstruments.device.RotoControlParameter;
 import com.bitwig.extensions.framework.Binding;
@@ -23,16 +22,11 @@ public class RotoButtonPluginParameterBinding extends Binding<RotoButton, RotoCo
         if (isActive()) {
             final long diff = System.currentTimeMillis() - buttonChangeTime;
             if (diff < 100) {
-                getSource().getMidiProcessor().sendSysEx(getSysExValueString(value));
+                getSource().getMidiProcessor().sendDisplayValue(1, getTarget().getIndex(), value);
             }
         }
     }
 
-    public String getSysExValueString(final String value) {
-        return "F0 00 22 03 02 0A 0F %02X %02X %sF7".formatted(
-            1, getTarget().getIndex(), StringUtil.nameToSysEx(value));
-    }
-
     private void handleDirectUpdate() {
         if (isActive()) {
             getSource().forceStateUpdate();
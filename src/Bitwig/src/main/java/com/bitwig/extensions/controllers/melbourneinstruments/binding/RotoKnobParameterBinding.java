@@ -44,14 +44,14 @@ public class RotoKnobParameterBinding extends Binding<RotoKnob, Parameter> {
         if (isActive()) {
             final long diff = System.currentTimeMillis() - knobChangeTime;
             if (diff < 300) {
-                getSource().updateDisplayValue(macroParameter.getSysExValueString(displayValue));
+                getSource().updateDisplayValue(0, macroParameter.getIndex(), displayValue);
             }
         }
     }
     
     private void resetName() {
         if (isActive()) {
-            getSource().updateDisplayValue(macroParameter.getSysExNameChange());
+            macroParameter.sendNameChange(getSource().getMidiProcessor());
         }
     }
     
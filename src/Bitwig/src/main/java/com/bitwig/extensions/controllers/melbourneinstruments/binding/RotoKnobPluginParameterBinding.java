@@ -1,6 +1,5 @@
 package com.bitwig.extensions.controllers.melbourneinstruments.binding;
 
-import com.bitwig.extensions.controllers.melbourneinstruments.StringUtil;
 import com.bitwig.extensions.controllers.melbourneinstruments.control.RotoKnob;
 import com.bitwig.extensions.controllers.melbourneinstruments.device.RotoControlParameter;
 import com.bitwig.extensions.controllers.melbourneinstruments.device.RotoParameter;
@@ -25,16 +24,11 @@ public class RotoKnobPluginParameterBinding extends Binding<RotoKnob, RotoContro
         if (isActive()) {
             final long diff = System.currentTimeMillis() - knobChangeTime;
             if (diff < 100) {
-                getSource().updateDisplayValue(getSysExValueString(value));
+                getSource().updateDisplayValue(0, getTarget().getIndex(), value);
             }
         }
     }
     
-    public String getSysExValueString(final String value) {
-        return "F0 00 22 03 02 0A 0F %02X %02X %sF7".formatted(
-            0, getTarget().getIndex(), StringUtil.nameToSysEx(value));
-    }
-    
     private void handleUpdate() {
         if (isActive()) {
             getSource().updatePosition(false);
@@ -38,8 +38,9 @@ public class RotoCcButton {
 
     public void initiateRepeat(final Runnable action, final int repeatDelay, final int repeatFrequency) {
         action.run();
-        currentTimer = new TimeRepeatEvent(action, repeatDelay, repeatFrequency);
-        midiProcessor.queueEvent(currentTimer);
+        final TimeRepeatEvent repeatEvent = new TimeRepeatEvent(action, repeatDelay, repeatFrequency);
+        midiProcessor.queueEvent(repeatEvent);
+        currentTimer = repeatEvent;
     }
 
     private void cancelEvent() {
@@ -1,12 +1,24 @@
 package com.bitwig.extensions.controllers.melbourneinstruments.control;
 
+import java.util.Arrays;
+
 import com.bitwig.extension.controller.api.HardwareButton;
 import com.bitwig.extension.controller.api.HardwareSurface;
 import com.bitwig.extension.controller.api.SettableDoubleValue;
 import com.bitwig.extensions.controllers.melbourneinstruments.MidiProcessor;
+import com.bitwig.extensions.framework.time.TimedDelayEvent;
 import com.bitwig.extensions.framework.values.BasicDoubleValue;
 
 public class RotoKnob {
+    private static final int STALE_HIGH_BYTE_TIME = 20;
+    private static final long STALE_HIGH_BYTE_NS = STALE_HIGH_BYTE_TIME * 1_000_000L;
+    private static final int ECHO_HISTORY = 8;
+    private static final int ECHO_TOLERANCE = 2;
+    private static final long ECHO_WINDOW_NS = 250_000_000L;
+    public static final int DEFAULT_DEADBAND = 8;
+    public static final int DEFAULT_MAX_UPDATE_RATE = 50;
+    private static final int SETTLE_TIME = 80;
+    
     private final int midiBase;
     private final int index;
     private int lowValue;
@@ -19,6 +31,23 @@ public class RotoKnob {
     private int lastSentLow = -1;
     private int lastSentHigh = -1;
     
+    private boolean highBytePending;
+    private int pendingHighValue;
+    private long highByteTime;
+    private long lastUpdateTime;
+    
+    private final int[] receivedValues = new int[ECHO_HISTORY];
+    private final long[] receivedTimes = new long[ECHO_HISTORY];
+    private int receivedIndex;
+    private long echoesSuppressed;
+    
+    private int deadband = DEFAULT_DEADBAND;
+    private long minUpdateInterval = 1_000_000_000L / DEFAULT_MAX_UPDATE_RATE;
+    private long lastSendTime;
+    private final TimedDelayEvent settleEvent = new TimedDelayEvent(this::settle, SETTLE_TIME);
+    private final TimedDelayEvent staleHighByteEvent = new TimedDelayEvent(this::applyStaleHighByte,
+        STALE_HIGH_BYTE_TIME);
+    
     public RotoKnob(final int index, final HardwareSurface surface, final MidiProcessor midiProcessor) {
         this.midiBase = index + 0xC;
         this.index = index;
@@ -27,6 +56,19 @@ public class RotoKnob {
         this.touchButton = surface.createHardwareButton("TOUCH_%d".formatted(index + 1));
         midiProcessor.setCcMatcher(this.touchButton, 0x34 + index);
         this.touchButton.isPressed().markInterested();
+        Arrays.fill(receivedValues, -1 - ECHO_TOLERANCE);
+    }
+    
+    /**
+     * Configures how motor positions coming from Bitwig are shaped. Whatever is held back is sent once the value has
+     * not changed for {@link #SETTLE_TIME} ms.
+     *
+     * @param deadband      changes smaller than this in 14-bit steps are held back until the value settles
+     * @param maxUpdateRate maximum number of positions sent per second
+     */
+    public void setMotorShaping(final int deadband, final int maxUpdateRate) {
+        this.deadband = Math.max(0, deadband);
+        this.minUpdateInterval = 1_000_000_000L / Math.max(1, maxUpdateRate);
     }
     
     public void setActive(final boolean active) {
@@ -49,8 +91,34 @@ public class RotoKnob {
         return highValue;
     }
     
+    /**
+     * @return {@link System#nanoTime()} of the last position received from the hardware
+     */
+    public long getLastUpdateTime() {
+        return lastUpdateTime;
+    }
+    
+    /**
+     * Incoming MSB. It is held back until the matching LSB arrives. A pending MSB that is superseded or that has not
+     * been completed within {@link #STALE_HIGH_BYTE_TIME} ms is applied on its own, the latter by a timer so a final
+     * MSB without LSB is not lost.
+     */
     public void setHighByteValue(final int value) {
-        this.highValue = value;
+        final long now = System.nanoTime();
+        if (highBytePending) {
+            applyPosition(pendingHighValue, lowValue, highByteTime);
+        }
+        pendingHighValue = value;
+        highBytePending = true;
+        highByteTime = now;
+        midiProcessor.queueEvent(staleHighByteEvent);
+    }
+    
+    private void applyStaleHighByte() {
+        if (highBytePending) {
+            highBytePending = false;
+            applyPosition(pendingHighValue, lowValue, highByteTime);
+        }
     }
     
     public void updateBytes(final int low, final int highValue) {
@@ -58,9 +126,31 @@ public class RotoKnob {
         this.highValue = highValue;
     }
     
+    /**
+     * Incoming LSB, completes a pending MSB or acts as a fine update on the current MSB.
+     */
     public void setLowValue(final int lowValue) {
+        final long now = System.nanoTime();
+        if (highBytePending) {
+            highBytePending = false;
+            staleHighByteEvent.cancel();
+            if (now - highByteTime > STALE_HIGH_BYTE_NS) {
+                applyPosition(pendingHighValue, this.lowValue, highByteTime);
+            } else {
+                this.highValue = pendingHighValue;
+            }
+        }
+        applyPosition(highValue, lowValue, now);
+    }
+    
+    private void applyPosition(final int highValue, final int lowValue, final long time) {
+        this.highValue = highValue;
         this.lowValue = lowValue;
+        this.lastUpdateTime = time;
         final int value = lowValue | (highValue << 7);
+        receivedIndex = (receivedIndex + 1) % ECHO_HISTORY;
+        receivedValues[receivedIndex] = value;
+        receivedTimes[receivedIndex] = time;
         knobValue.setForce(Math.min(1, value / 16382.0));
     }
     
@@ -73,17 +163,67 @@ public class RotoKnob {
     }
     
     public void updatePosition(final boolean force) {
-        if (active) {
-            if (force || lastSentHigh != highValue || lastSentLow != lowValue) {
-                midiProcessor.sendCCHiRes(midiBase, highValue, lowValue);
+        if (!active) {
+            return;
+        }
+        if (force) {
+            sendPosition(System.nanoTime());
+        } else if (lastSentHigh != highValue || lastSentLow != lowValue) {
+            final int value = lowValue | (highValue << 7);
+            final long now = System.nanoTime();
+            if (isEcho(value)) {
+                echoesSuppressed++;
                 lastSentLow = lowValue;
                 lastSentHigh = highValue;
+            } else if (Math.abs(value - (lastSentLow | (lastSentHigh << 7))) < deadband
+                || now - lastSendTime < minUpdateInterval) {
+                midiProcessor.queueEvent(settleEvent);
+            } else {
+                sendPosition(now);
+            }
+        }
+    }
+    
+    private void sendPosition(final long time) {
+        midiProcessor.sendCCHiRes(midiBase, highValue, lowValue);
+        lastSentLow = lowValue;
+        lastSentHigh = highValue;
+        lastSendTime = time;
+    }
+    
+    /**
+     * Sends the resting position that was held back by deadband or rate limit.
+     */
+    private void settle() {
+        if (active && (lastSentHigh != highValue || lastSentLow != lowValue)) {
+            sendPosition(System.nanoTime());
+        }
+    }
+    
+    /**
+     * @return true if the hardware itself reported a position within {@link #ECHO_TOLERANCE} steps of the value
+     * within the last {@link #ECHO_WINDOW_NS}, i.e. the value is Bitwig echoing the knob movement
+     */
+    private boolean isEcho(final int value) {
+        final long now = System.nanoTime();
+        for (int i = 0; i < ECHO_HISTORY; i++) {
+            if (now - receivedTimes[i] <= ECHO_WINDOW_NS && Math.abs(receivedValues[i] - value) <= ECHO_TOLERANCE) {
+                return true;
             }
         }
+        return false;
+    }
+    
+    public long getEchoesSuppressed() {
+        return echoesSuppressed;
+    }
+    
+    public void updateDisplayValue(final int type, final int index, final String value) {
+        midiProcessor.sendDisplayValue(type, index, value);
     }
     
-    public void updateDisplayValue(final String sysExName) {
-        midiProcessor.sendSysEx(sysExName);
+    public MidiProcessor getMidiProcessor() {
+        return midiProcessor;
     }
     
 }
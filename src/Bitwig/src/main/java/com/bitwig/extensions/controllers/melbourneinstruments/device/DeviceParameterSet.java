@@ -1,69 +1,121 @@
 package com.bitwig.extensions.controllers.melbourneinstruments.device;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import com.bitwig.extensions.controllers.melbourneinstruments.RotoControlExtension;
 import com.bitwig.extensions.controllers.melbourneinstruments.StringUtil;
 
 public class DeviceParameterSet {
-    
-    // Maps ID to Parameter Object
-    private final HashMap<String, RotoParameter> pidParameterLookup = new HashMap<>();
-    // Maps hash to Parameter object
-    private final HashMap<String, RotoParameter> hashToParameter = new HashMap<>();
+    private static final String CONTENTS_PATH = "CONTENTS/";
+    private static final String PLUGIN_CONTENTS_PATH = "CONTENTS/ROOT_GENERIC_MODULE/";
+    private static final int SET_OVERHEAD = 512;
+    private static final ParameterTable EMPTY_TABLE = new ParameterTable(new String[0], new String[0], new long[0], 0);
+    
+    private ParameterTable table = EMPTY_TABLE;
+    // Names and values reported while the lookup tables are still being built
+    private final Map<String, String> pendingNames = new HashMap<>();
+    private final Map<String, Double> pendingValues = new HashMap<>();
     private final String name;
-    private final String sysExName;
-    private final String sysExHash;
+    private final byte[] hash;
     private boolean parameterRegistered;
-    private String[] allIds;
+    private boolean registrationPending;
     private boolean isPlugin;
     private final List<ParameterSettings> stashedRequestedParameters = new ArrayList<>();
+    private final ParameterIndexStore indexStore;
     
-    public DeviceParameterSet(final String name, final boolean isPlugin) {
+    public DeviceParameterSet(final String name, final boolean isPlugin, final ParameterIndexStore indexStore) {
         this.name = name;
         this.isPlugin = isPlugin;
+        this.indexStore = indexStore;
         //RotoControlExtension.println("CREATE %s  => %s", name, isPlugin);
-        this.sysExName = StringUtil.toSysExName(name);
-        this.sysExHash = StringUtil.createHash(name, 8).stream().collect(Collectors.joining(" "));
-        //RotoControlExtension.println(" <%s> => %s ", name, sysExHash);
+        this.hash = StringUtil.getPluginHash(name, 8);
     }
     
     public String getName() {
         return name;
     }
     
-    public String getSysExHash() {
-        return sysExHash;
+    public byte[] getHash() {
+        return hash;
     }
     
-    public String getSysExName() {
-        return sysExName;
+    /**
+     * Claims the registration of the given parameter IDs. Names and values reported until the lookup tables are
+     * published are held back and applied on {@link #publish(ParameterTable)}.
+     *
+     * @return false if the parameters are already registered or being registered
+     */
+    public boolean beginRegistration(final String[] ids) {
+        if (parameterRegistered || registrationPending || ids.length == 0) {
+            return false;
+        }
+        registrationPending = true;
+        return true;
     }
     
-    public void registerParameterIds(final String[] ids) {
-        if (parameterRegistered || ids.length == 0) {
-            return;
-        }
+    public boolean isRegistrationPending() {
+        return registrationPending;
+    }
+    
+    /**
+     * Normalises the IDs and hashes all parameters, using the stored index if there is one. Only touches immutable
+     * state of the set, so it can run on any thread.
+     */
+    public ParameterTable buildTable(final String[] ids, final boolean plugin) {
         // RotoControlExtension.println(" INCOMING (%s) PARAM BLOCK %d", name, ids.length);
-        if (isPlugin) {
-            allIds = Arrays.stream(ids).map(id -> id.replaceFirst("CONTENTS/", "CONTENTS/ROOT_GENERIC_MODULE/"))
-                .toArray(String[]::new);
+        final String[] normalizedIds;
+        if (plugin) {
+            normalizedIds = new String[ids.length];
+            for (int index = 0; index < ids.length; index++) {
+                normalizedIds[index] = toPluginPath(ids[index]);
+            }
         } else {
-            allIds = ids;
+            normalizedIds = ids;
         }
-        //RotoControlExtension.println(" PIDS %s %s", name, isPlugin);
-        for (int index = 0; index < ids.length; index++) {
-            final String id = ids[index];
-            final String pid = getLastSegment(id);
-            final RotoParameter parameter = new RotoParameter(index, id, false);
-            pidParameterLookup.put(pid, parameter);
-            hashToParameter.put(parameter.getRefHash(), parameter);
+        final long fingerprint = ParameterIndexStore.fingerprint(ids);
+        final long[] storedHashes = indexStore.load(name, hash, fingerprint, ids.length);
+        final long[] hashes = storedHashes != null ? storedHashes : new long[ids.length];
+        if (storedHashes == null) {
+            for (int index = 0; index < ids.length; index++) {
+                hashes[index] = RotoParameter.toHashKey(StringUtil.getPluginHash(ids[index], 6));
+            }
+            indexStore.save(name, hash, fingerprint, hashes);
         }
+        return new ParameterTable(ids, normalizedIds, hashes, fingerprint);
+    }
+    
+    /**
+     * Installs the lookup tables, needs to be called on the controller thread.
+     */
+    public void publish(final ParameterTable table) {
+        this.table = table;
+        registrationPending = false;
         parameterRegistered = true;
+        pendingNames.forEach(this::registerName);
+        pendingNames.clear();
+        pendingValues.forEach((pid, value) -> {
+            final int index = table.indexOfPid(pid);
+            if (index != -1) {
+                table.setValue(index, value);
+            }
+        });
+        pendingValues.clear();
+    }
+    
+    /**
+     * Gives up a registration that could not be completed, the next ID report starts over.
+     */
+    public void abortRegistration() {
+        registrationPending = false;
+        pendingNames.clear();
+        pendingValues.clear();
+    }
+    
+    public void stashValue(final String pid, final double value) {
+        pendingValues.put(pid, value);
     }
     
     public List<ParameterSettings> getStashedRequestedParameters() {
@@ -75,35 +127,89 @@ public class DeviceParameterSet {
     }
     
     public void registerName(final String id, final String name) {
+        if (registrationPending) {
+            pendingNames.put(id, name);
+            return;
+        }
         final String pid = getLastSegment(id);
-        final RotoParameter parameter = pidParameterLookup.get(pid);
-        if (parameter != null) {
-            parameter.setName(name);
+        final int index = table.indexOfPid(pid);
+        if (index != -1) {
+            table.setName(index, name);
         } else {
             RotoControlExtension.println("<%s> PID %s name=%s  not registered", pid, name, this.name);
             // TODO In case parameters come later
         }
     }
     
+    private static String toPluginPath(final String id) {
+        final int index = id.indexOf(CONTENTS_PATH);
+        if (index == -1) {
+            return id;
+        }
+        return id.substring(0, index) + PLUGIN_CONTENTS_PATH + id.substring(index + CONTENTS_PATH.length());
+    }
+    
     public static String getLastSegment(final String path) {
         final int lastSlashIndex = path.lastIndexOf('/');
         return lastSlashIndex == -1 ? path : path.substring(lastSlashIndex + 1);
     }
     
+    /**
+     * @return index of the parameter with the given ID (last path segment) or -1
+     */
+    public int indexOf(final String pid) {
+        return table.indexOfPid(pid);
+    }
+    
+    public RotoParameter getParameter(final int index) {
+        return table.getParameter(index);
+    }
+    
     public RotoParameter getParameter(final String pid) {
-        return pidParameterLookup.get(pid);
+        return table.getParameter(table.indexOfPid(pid));
+    }
+    
+    public RotoParameter getParameterByHash(final long hash) {
+        return table.getParameter(table.indexOfHash(hash));
     }
     
-    public RotoParameter getParameterByHash(final String hash) {
-        return hashToParameter.get(hash);
+    public double getValue(final int index) {
+        return table.getValue(index);
+    }
+    
+    public void setValue(final int index, final double value) {
+        table.setValue(index, value);
     }
     
     public void clearLearned() {
-        pidParameterLookup.values().forEach(param -> param.setLearned(false));
+        table.clearLearned();
+    }
+    
+    public int getParameterCount() {
+        return table.size();
+    }
+    
+    public long getFingerprint() {
+        return table.getFingerprint();
+    }
+    
+    public String getObservedId(final int index) {
+        return table.getObservedIds()[index];
     }
     
     public String[] getParameters() {
-        return allIds;
+        return table.getObservedIds();
+    }
+    
+    /**
+     * @return rough estimate of the heap held by this set in bytes
+     */
+    public long estimateSize() {
+        return SET_OVERHEAD + name.length() + table.estimateSize();
+    }
+    
+    public boolean isPlugin() {
+        return isPlugin;
     }
     
     public void registerPluginState(final boolean isPlugin) {
@@ -1,5 +1,8 @@
 package com.bitwig.extensions.controllers.melbourneinstruments.device;
 
+import com.bitwig.extensions.controllers.melbourneinstruments.MidiProcessor;
+import com.bitwig.extensions.controllers.melbourneinstruments.SysExFrame;
+
 public class DeviceState {
     private boolean exists;
     private boolean enabled;
@@ -56,13 +59,6 @@ public class DeviceState {
         return "";
     }
     
-    public String getSysExName() {
-        if (parameterSet != null) {
-            return parameterSet.getSysExName();
-        }
-        return "";
-    }
-    
     public void setEnabled(final boolean enabled) {
         this.enabled = enabled;
     }
@@ -71,17 +67,25 @@ public class DeviceState {
         return exists;
     }
     
+    public DeviceParameterSet getParameterSet() {
+        return parameterSet;
+    }
+    
     public void setParameterSet(final DeviceParameterSet parameterSet) {
         this.parameterSet = parameterSet;
     }
     
-    public String toSysExUpdate(final int slotIndex) {
+    public void sendUpdate(final MidiProcessor midiProcessor, final int slotIndex) {
         if (this.parameterSet != null) {
-            return "F0 00 22 03 02 0B 05 %02X %s %02X %s%02X %02X F7".formatted(
-                slotIndex, parameterSet.getSysExHash(),
-                enabled ? 1 : 0, parameterSet.getSysExName(), inMacroMode ? 1 : 0, pages);
+            midiProcessor.frame(MidiProcessor.CMD_ID_PLUGIN, 0x05) //
+                .value(slotIndex) //
+                .bytes(parameterSet.getHash()) //
+                .value(enabled) //
+                .name(parameterSet.getName(), SysExFrame.NAME_LENGTH) //
+                .value(inMacroMode) //
+                .value(pages) //
+                .send();
         }
-        return null;
     }
     
 }
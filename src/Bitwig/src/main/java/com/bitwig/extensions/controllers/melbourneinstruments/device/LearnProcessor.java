@@ -1,65 +1,175 @@
 package com.bitwig.extensions.controllers.melbourneinstruments.device;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.bitwig.extension.controller.api.ControllerHost;
 import com.bitwig.extension.controller.api.CursorDevice;
 import com.bitwig.extensions.controllers.melbourneinstruments.MidiProcessor;
-import com.bitwig.extensions.controllers.melbourneinstruments.RotoControlExtension;
+import com.bitwig.extensions.controllers.melbourneinstruments.device.StepProfileStore.StepProfile;
 
+/**
+ * Learns the steps of the parameters touched in learn mode. Each touched parameter becomes a learn job, up to
+ * {@link #MAX_ACTIVE_JOBS} of them are probed at the same time: all active jobs set their next probe in the same
+ * update interval, so one parameter's display values arrive while the others are being set. A job is sent as soon as
+ * it completes, jobs beyond the limit wait in a queue.
+ * <p>
+ * Stepped parameters served from the {@link StepProfileStore} are learned again once they show a display value that
+ * isn't one of the stored step names, e.g. after a plugin update changed their steps.
+ */
 public class LearnProcessor {
     
     public static final int UPDATE_INTERVAL = 5;
-    public final static int STEPS = 48;
-    private final static double STEP_INC = 1.0 / (double) STEPS;
+    public static final int MAX_ACTIVE_JOBS = 4;
     
-    private final StepDetector stepDetector = new StepDetector();
+    private static class LearnJob {
+        private final DeviceParameterSet parameterSet;
+        private final RotoParameter parameter;
+        private final double initialValue;
+        private final StepDetector stepDetector = new StepDetector();
+        
+        private LearnJob(final DeviceParameterSet parameterSet, final RotoParameter parameter,
+            final double initialValue) {
+            this.parameterSet = parameterSet;
+            this.parameter = parameter;
+            this.initialValue = initialValue;
+        }
+    }
+    
+    private record StoredProfile(DeviceParameterSet parameterSet, RotoParameter parameter, StepProfile profile) {
+    }
+    
+    private final Map<String, LearnJob> activeJobs = new LinkedHashMap<>();
+    private final Map<String, StoredProfile> storedProfiles = new HashMap<>();
+    private final Deque<LearnJob> queuedJobs = new ArrayDeque<>();
+    private final StepProfileStore profileStore;
     private final MidiProcessor midiProcessor;
     private final CursorDevice cursorDevice;
     private final ControllerHost host;
+    private int maxActiveJobs = MAX_ACTIVE_JOBS;
+    private boolean updateScheduled;
+    private long learnedCount;
     
-    public LearnProcessor(final MidiProcessor midiProcessor, final CursorDevice cursorDevice) {
+    public LearnProcessor(final MidiProcessor midiProcessor, final CursorDevice cursorDevice,
+        final StepProfileStore profileStore) {
         this.midiProcessor = midiProcessor;
         this.cursorDevice = cursorDevice;
+        this.profileStore = profileStore;
         this.host = midiProcessor.getHost();
     }
     
-    public void captureDisplayValue(final RotoParameter parameter, final String displayValue) {
+    /**
+     * @param maxActiveJobs number of parameters probed at the same time, 1 learns one parameter after the other
+     */
+    public void setMaxActiveJobs(final int maxActiveJobs) {
+        this.maxActiveJobs = Math.max(1, maxActiveJobs);
+    }
+    
+    /**
+     * Starts loading the stored profiles of a device whose parameters may get learned.
+     */
+    public void prefetch(final DeviceParameterSet parameterSet) {
+        profileStore.prefetch(parameterSet);
+    }
+    
+    public long getLearnedCount() {
+        return learnedCount;
+    }
+    
+    public boolean isProbing(final String pid) {
+        return activeJobs.containsKey(pid);
+    }
+    
+    public boolean isLearning() {
+        return !activeJobs.isEmpty() || !queuedJobs.isEmpty();
+    }
+    
+    public void captureDisplayValue(final DeviceParameterSet parameterSet, final String pid,
+        final String displayValue) {
         if (displayValue.isBlank()) {
             return;
         }
-        if (parameter.getId().equals(stepDetector.getParamId())) {
-            stepDetector.setValueString(displayValue);
+        final LearnJob job = activeJobs.get(pid);
+        if (job != null) {
+            job.stepDetector.setValueString(displayValue);
+            return;
+        }
+        final StoredProfile stored = storedProfiles.get(pid);
+        if (stored != null && stored.parameterSet == parameterSet
+            && !stored.profile.stepNames().contains(displayValue)) {
+            storedProfiles.remove(pid);
+            profileStore.remove(parameterSet, pid);
+            queueJob(parameterSet, stored.parameter, parameterSet.getValue(parameterSet.indexOf(pid)));
         }
     }
     
-    public void captureValue(final RotoParameter parameter, final double value, final double initialValue) {
-        if (stepDetector.getParamId() == null && !parameter.isLearned()) {
-            stepDetector.init(parameter.getId());
-            stepDetector.setValue(value);
-            runStepUpdate(parameter, 0, 0, () -> this.captureAndSendLearned(parameter, initialValue));
-            parameter.setLearned(true);
-        } else if (parameter.getId().equals(stepDetector.getParamId())) {
-            stepDetector.setValue(value);
+    public void captureValue(final DeviceParameterSet parameterSet, final RotoParameter parameter, final double value,
+        final double initialValue) {
+        final LearnJob activeJob = activeJobs.get(parameter.getId());
+        if (activeJob != null) {
+            activeJob.stepDetector.setValue(value);
+        } else if (!parameter.isLearned()) {
             parameter.setLearned(true);
+            final StepProfile profile = profileStore.get(parameterSet, parameter.getId());
+            if (profile != null) {
+                // learned before, no need to probe the parameter
+                if (profile.steps() > 0) {
+                    storedProfiles.put(parameter.getId(), new StoredProfile(parameterSet, parameter, profile));
+                }
+                learnedCount++;
+                sendLearned(parameter, profile);
+                return;
+            }
+            queueJob(parameterSet, parameter, initialValue);
         }
     }
     
-    private void captureAndSendLearned(final RotoParameter parameter) {
+    private void queueJob(final DeviceParameterSet parameterSet, final RotoParameter parameter,
+        final double initialValue) {
+        queuedJobs.add(new LearnJob(parameterSet, parameter, initialValue));
+        startJobs();
+        if (!updateScheduled) {
+            updateScheduled = true;
+            host.scheduleTask(this::runStepUpdate, UPDATE_INTERVAL);
+        }
+    }
+    
+    /**
+     * Drops parameters that are waiting to be learned, jobs being probed run to completion.
+     */
+    public void clearQueue() {
+        queuedJobs.forEach(job -> job.parameter.setLearned(false));
+        queuedJobs.clear();
+        storedProfiles.clear();
+    }
+    
+    private void captureAndSendLearned(final LearnJob job) {
+        final StepDetector stepDetector = job.stepDetector;
         final List<String> stepNames = stepDetector.getStepNames();
-        RotoControlExtension.println(
-            " STEPS = %d [%s,%s] distinct=%d 3rdParty=%s", stepNames.size(), stepNames.get(0),
-            stepNames.get(stepNames.size() - 1), stepDetector.getDistinctValues(), cursorDevice.isPlugin().get());
-        if (stepDetector.getNrOfSteps() <= 0x18 && stepDetector.getNrOfSteps() > 1) {
-            parameter.setSteps(stepDetector.getNrOfSteps());
-            final String sysEx =
-                parameter.getLearnSysEx(stepDetector.getStepSysExNames()); //cursorDevice.isPlugin().get()
-            midiProcessor.sendSysEx(sysEx);
+        final StepProfile profile;
+        if (!stepDetector.isContinuous() && stepDetector.getNrOfSteps() > 1) {
+            profile = new StepProfile(stepDetector.getNrOfSteps(), false, stepNames);
+        } else {
+            profile = new StepProfile(0, isCenterDetent(stepNames), List.of());
+        }
+        profileStore.put(job.parameterSet, job.parameter.getId(), profile);
+        learnedCount++;
+        sendLearned(job.parameter, profile);
+    }
+    
+    private void sendLearned(final RotoParameter parameter, final StepProfile profile) {
+        if (profile.steps() > 0) {
+            parameter.setSteps(profile.steps());
+            parameter.sendLearn(midiProcessor, profile.stepNames());
         } else {
-            parameter.setCenterDetent(isCenterDetent(stepNames));
+            parameter.setCenterDetent(profile.centerDetent());
             parameter.setSteps(0);
-            // cursorDevice.isPlugin().get()
-            midiProcessor.sendSysEx(parameter.getLearnSysEx());
+            parameter.sendLearn(midiProcessor);
         }
     }
     
@@ -78,21 +188,51 @@ public class LearnProcessor {
         return false;
     }
     
-    public void captureAndSendLearned(final RotoParameter parameter, final double previousValue) {
-        stepDetector.registerCapture();
-        parameter.setValue(previousValue);
-        cursorDevice.setDirectParameterValueNormalized(parameter.getFullId(), previousValue, 1.0);
-        captureAndSendLearned(parameter);
+    private void completeJob(final LearnJob job) {
+        job.stepDetector.registerCapture();
+        job.parameter.setValue(job.initialValue);
+        cursorDevice.setDirectParameterValueNormalized(job.parameter.getFullId(), job.initialValue, 1.0);
+        captureAndSendLearned(job);
     }
     
-    private void runStepUpdate(final RotoParameter parameter, final int step, final double value,
-        final Runnable completeAction) {
-        cursorDevice.setDirectParameterValueNormalized(parameter.getFullId(), value, 1.0);
-        if (step <= STEPS) {
-            host.scheduleTask(
-                () -> runStepUpdate(parameter, step + 1, value + STEP_INC, completeAction), UPDATE_INTERVAL);
+    private void startJobs() {
+        while (activeJobs.size() < maxActiveJobs && !queuedJobs.isEmpty()) {
+            final LearnJob job = queuedJobs.poll();
+            job.stepDetector.init(job.parameter.getId());
+            activeJobs.put(job.parameter.getId(), job);
+            probeNext(job);
+        }
+    }
+    
+    /**
+     * Sets the next probe of the job or completes it.
+     *
+     * @return false if the job is complete
+     */
+    private boolean probeNext(final LearnJob job) {
+        final double position = job.stepDetector.nextProbe();
+        if (position == StepDetector.NO_PROBE) {
+            return false;
+        }
+        cursorDevice.setDirectParameterValueNormalized(job.parameter.getFullId(), position, 1.0);
+        return true;
+    }
+    
+    private void runStepUpdate() {
+        final Iterator<LearnJob> iterator = activeJobs.values().iterator();
+        while (iterator.hasNext()) {
+            final LearnJob job = iterator.next();
+            job.stepDetector.completeProbe();
+            if (!probeNext(job)) {
+                iterator.remove();
+                completeJob(job);
+            }
+        }
+        startJobs();
+        if (activeJobs.isEmpty()) {
+            updateScheduled = false;
         } else {
-            host.scheduleTask(completeAction, UPDATE_INTERVAL);
+            host.scheduleTask(this::runStepUpdate, UPDATE_INTERVAL);
         }
     }
 }
@@ -0,0 +1,118 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.device;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from long keys to non-negative int values with linear probing. Fixed capacity, sized for the
+ * expected number of entries up front, no boxing and no entry objects.
+ */
+public class LongIntHashMap {
+    public static final int NO_VALUE = -1;
+
+    private final long[] keys;
+    private final int[] values;
+    private final int mask;
+    private final int shift;
+    private int size;
+
+    /**
+     * @param expectedSize number of entries the map needs to hold, the table is kept at most half full
+     */
+    public LongIntHashMap(final int expectedSize) {
+        final int capacity = Integer.highestOneBit(Math.max(2, expectedSize) * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        Arrays.fill(values, NO_VALUE);
+    }
+
+    /**
+     * @param value non-negative value, replaces the value of an existing entry with the same key
+     */
+    public void put(final long key, final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        int slot = slot(key);
+        while (values[slot] != NO_VALUE) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == mask) {
+            throw new IllegalStateException("Map full");
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * @return the value stored for the key or {@link #NO_VALUE}
+     */
+    public int get(final long key) {
+        int slot = slot(key);
+        while (values[slot] != NO_VALUE) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Removes the entry of the key, later entries of the same probe sequence are moved back into the gap.
+     *
+     * @return the value that was stored for the key or {@link #NO_VALUE}
+     */
+    public int remove(final long key) {
+        int slot = slot(key);
+        while (values[slot] != NO_VALUE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        final int value = values[slot];
+        if (value == NO_VALUE) {
+            return NO_VALUE;
+        }
+        int gap = slot;
+        int next = gap;
+        while (true) {
+            next = (next + 1) & mask;
+            if (values[next] == NO_VALUE) {
+                break;
+            }
+            // an entry may only move back if the gap is not in front of its home slot
+            if (((next - slot(keys[next])) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        values[gap] = NO_VALUE;
+        size--;
+        return value;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(values, NO_VALUE);
+            size = 0;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    private int slot(final long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+}
@@ -3,7 +3,6 @@ package com.bitwig.extensions.controllers.melbourneinstruments.device;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import com.bitwig.extension.controller.api.CursorRemoteControlsPage;
 import com.bitwig.extension.controller.api.Parameter;
@@ -13,18 +12,16 @@ public class MacroDevice {
     private static final String MACRO_DEVICE_NAME = "MIMacroDefaultDevice";
     
     private final List<RotoMacroParameter> rotoParameters = new ArrayList<>();
-    private final String sysExHash;
-    private final String refHash;
+    private final byte[] hash;
     private int remotePages = 0;
     private int remotePageIndex = 0;
     private final CursorRemoteControlsPage remotes;
+    private Runnable scrollSettledListener = () -> {};
     
     public MacroDevice(final CursorRemoteControlsPage remotes) {
         this.remotes = remotes;
-        final List<String> hashList = StringUtil.createHash(MACRO_DEVICE_NAME, 8);
-        this.sysExHash = hashList.stream().collect(Collectors.joining(" "));
-        this.refHash = hashList.stream().collect(Collectors.joining(""));
-        remotes.selectedPageIndex().addValueObserver(this::setRemotePageIndex);
+        this.hash = StringUtil.getPluginHash(MACRO_DEVICE_NAME, 8);
+        remotes.selectedPageIndex().addValueObserver(this::handlePageIndexChange);
         for (int i = 0; i < 8; i++) {
             rotoParameters.add(new RotoMacroParameter(i, "Macro %d".formatted(i + 1)));
         }
@@ -54,6 +51,17 @@ public class MacroDevice {
         return remotePages;
     }
     
+    private void handlePageIndexChange(final int pageIndex) {
+        setRemotePageIndex(pageIndex);
+        if (scrollInPlace()) {
+            scrollSettledListener.run();
+        }
+    }
+    
+    public void setScrollSettledListener(final Runnable listener) {
+        this.scrollSettledListener = listener;
+    }
+    
     public void setRemotePageIndex(final int remotePageIndex) {
         this.remotePageIndex = Math.max(0, remotePageIndex);
     }
@@ -66,8 +74,8 @@ public class MacroDevice {
         return remotePageIndex == this.remotes.selectedPageIndex().get();
     }
     
-    public String getSysExHash() {
-        return sysExHash;
+    public byte[] getHash() {
+        return hash;
     }
     
     
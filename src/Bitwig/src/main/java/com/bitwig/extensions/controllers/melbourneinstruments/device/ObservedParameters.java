@@ -0,0 +1,73 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.device;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.bitwig.extension.controller.api.DirectParameterValueDisplayObserver;
+
+/**
+ * Keeps track of the parameter IDs whose display values are observed. Changes are collected and only handed to Bitwig
+ * on {@link #apply()}, which is called on flush. The observer can only be given the complete ID list, so the list is
+ * only sent if the requested IDs actually differ from the observed ones.
+ */
+public class ObservedParameters {
+    private final DirectParameterValueDisplayObserver observer;
+    private final Set<String> requested = new LinkedHashSet<>();
+    private final Set<String> observed = new HashSet<>();
+    private boolean dirty;
+    private long updates;
+    private long skippedUpdates;
+
+    public ObservedParameters(final DirectParameterValueDisplayObserver observer) {
+        this.observer = observer;
+    }
+
+    public void add(final String id) {
+        dirty |= requested.add(id);
+    }
+
+    public void remove(final String id) {
+        dirty |= requested.remove(id);
+    }
+
+    public void clear() {
+        if (!requested.isEmpty()) {
+            requested.clear();
+            dirty = true;
+        }
+    }
+
+    public boolean isObserved(final String id) {
+        return observed.contains(id);
+    }
+
+    /**
+     * Hands the requested IDs to the observer if they changed since the last call.
+     *
+     * @return true if the observer was updated
+     */
+    public boolean apply() {
+        if (!dirty) {
+            return false;
+        }
+        dirty = false;
+        if (requested.equals(observed)) {
+            skippedUpdates++;
+            return false;
+        }
+        observer.setObservedParameterIds(requested.toArray(String[]::new));
+        observed.clear();
+        observed.addAll(requested);
+        updates++;
+        return true;
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+
+    public long getSkippedUpdates() {
+        return skippedUpdates;
+    }
+}
@@ -0,0 +1,144 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.device;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Persists the parameter hashes of a device, one file per device named after the device hash. An index is only used
+ * if device name and the fingerprint of the parameter ID list match, so a plugin update that changes its parameters
+ * simply gets a new index.
+ * <p>
+ * File layout: int magic, int version, int name length, name (UTF-8), long fingerprint, int count, then count
+ * parameter hashes in ID order.
+ */
+public class ParameterIndexStore {
+    private static final int MAGIC = 0x52435049;
+    private static final int VERSION = 1;
+    static final int HASH_SIZE = 6;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Path directory;
+    // Loads and saves run on the hash worker threads, so errors are handed to the owner instead of the host console
+    private final Consumer<String> errorReporter;
+
+    public ParameterIndexStore(final Path directory, final Consumer<String> errorReporter) {
+        this.directory = directory;
+        this.errorReporter = errorReporter;
+    }
+
+    public static ParameterIndexStore createDefault(final Consumer<String> errorReporter) {
+        return new ParameterIndexStore(Path.of(System.getProperty("user.home"), ".roto-control", "parameter-index"),
+            errorReporter);
+    }
+
+    /**
+     * FNV-1a over all parameter IDs, a lot cheaper than hashing every single ID.
+     */
+    public static long fingerprint(final String[] ids) {
+        long hash = FNV_OFFSET;
+        for (final String id : ids) {
+            for (int i = 0; i < id.length(); i++) {
+                hash = (hash ^ id.charAt(i)) * FNV_PRIME;
+            }
+            hash = (hash ^ 0xFFFF) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * @return the stored parameter hashes, packed as by {@link RotoParameter#toHashKey(byte[])}, or null if there is
+     * no matching index
+     */
+    public long[] load(final String deviceName, final byte[] deviceHash, final long fingerprint, final int count) {
+        final Path file = indexFile(deviceHash);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            // read in one go rather than mapped, a mapping stays open until collected and blocks replacing the file
+            // on Windows
+            final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            final byte[] name = new byte[buffer.getInt()];
+            buffer.get(name);
+            if (!Arrays.equals(name, deviceName.getBytes(StandardCharsets.UTF_8)) || buffer.getLong() != fingerprint
+                || buffer.getInt() != count) {
+                return null;
+            }
+            final long[] hashes = new long[count];
+            for (int index = 0; index < count; index++) {
+                long hash = 0;
+                for (int i = 0; i < HASH_SIZE; i++) {
+                    hash = (hash << 7) | (buffer.get() & 0x7F);
+                }
+                hashes[index] = hash;
+            }
+            return hashes;
+        }
+        catch (final IOException | RuntimeException exception) {
+            errorReporter.accept("Parameter index %s not readable: %s".formatted(file, exception.getMessage()));
+            return null;
+        }
+    }
+
+    public void save(final String deviceName, final byte[] deviceHash, final long fingerprint,
+        final long[] hashes) {
+        final Path file = indexFile(deviceHash);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(directory);
+            tempFile = Files.createTempFile(directory, "index", ".tmp");
+            try (final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                final byte[] name = deviceName.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(name.length);
+                out.write(name);
+                out.writeLong(fingerprint);
+                out.writeInt(hashes.length);
+                for (final long hash : hashes) {
+                    for (int i = HASH_SIZE - 1; i >= 0; i--) {
+                        out.writeByte((int) ((hash >> (7 * i)) & 0x7F));
+                    }
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (final IOException exception) {
+            errorReporter.accept("Parameter index %s not written: %s".formatted(file, exception.getMessage()));
+            deleteQuietly(tempFile);
+        }
+    }
+
+    private static void deleteQuietly(final Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (final IOException exception) {
+            // nothing left to do, the next save uses a new temp file
+        }
+    }
+
+    private Path indexFile(final byte[] deviceHash) {
+        final StringBuilder fileName = new StringBuilder();
+        for (final byte value : deviceHash) {
+            fileName.append("%02x".formatted(value));
+        }
+        return directory.resolve(fileName.append(".idx").toString());
+    }
+}
@@ -0,0 +1,107 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.device;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Least recently used cache of {@link DeviceParameterSet}s by device name, bounded by number of sets and by their
+ * estimated size. Sets that are in use are never evicted, an evicted set is simply rebuilt the next time the device
+ * shows up, with its hashes coming from the {@link ParameterIndexStore}.
+ */
+public class ParameterSetCache {
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+    public static final long DEFAULT_MAX_WEIGHT = 16L * 1024 * 1024;
+
+    private final LinkedHashMap<String, DeviceParameterSet> sets = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<DeviceParameterSet, Long> weights = new HashMap<>();
+    private final Predicate<DeviceParameterSet> inUse;
+    private final int maxEntries;
+    private final long maxWeight;
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ParameterSetCache(final Predicate<DeviceParameterSet> inUse) {
+        this(inUse, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT);
+    }
+
+    /**
+     * @param inUse      tells which sets must not be evicted
+     * @param maxEntries maximum number of cached sets
+     * @param maxWeight  maximum estimated size of all cached sets in bytes
+     */
+    public ParameterSetCache(final Predicate<DeviceParameterSet> inUse, final int maxEntries, final long maxWeight) {
+        this.inUse = inUse;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    public DeviceParameterSet get(final String name, final Function<String, DeviceParameterSet> factory) {
+        final DeviceParameterSet cached = sets.get(name);
+        if (cached != null) {
+            hits++;
+            return cached;
+        }
+        misses++;
+        final DeviceParameterSet parameterSet = factory.apply(name);
+        sets.put(name, parameterSet);
+        updateWeight(parameterSet);
+        return parameterSet;
+    }
+
+    /**
+     * Re-evaluates the size of a set, i.e. after its parameters have been registered, and evicts if the cache got too
+     * large.
+     */
+    public void updateWeight(final DeviceParameterSet parameterSet) {
+        if (sets.get(parameterSet.getName()) != parameterSet) {
+            return;
+        }
+        final long setWeight = parameterSet.estimateSize();
+        final Long previous = weights.put(parameterSet, setWeight);
+        weight += setWeight - (previous != null ? previous : 0);
+        evict();
+    }
+
+    private void evict() {
+        final Iterator<DeviceParameterSet> iterator = sets.values().iterator();
+        while ((sets.size() > maxEntries || weight > maxWeight) && iterator.hasNext()) {
+            final DeviceParameterSet eldest = iterator.next();
+            if (!inUse.test(eldest)) {
+                iterator.remove();
+                weight -= weights.remove(eldest);
+                evictions++;
+            }
+        }
+    }
+
+    public int size() {
+        return sets.size();
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public String getStatistics() {
+        return "sets=%d weight=%dkB hits=%d misses=%d evictions=%d".formatted(sets.size(), weight / 1024, hits, misses,
+            evictions);
+    }
+}
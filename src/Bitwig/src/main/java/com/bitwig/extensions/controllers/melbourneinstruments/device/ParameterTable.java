@@ -0,0 +1,213 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.device;
+
+import java.util.Arrays;
+
+/**
+ * Parameters of a device stored as parallel arrays indexed by parameter index. The IDs reported by Bitwig are kept as
+ * they are, the parameter ID (last path segment) is only compared in place. Hash and parameter ID lookups go through
+ * open addressing tables holding indices. {@link RotoParameter} objects are only created for parameters that are
+ * actually handed out, i.e. mapped to a control, and read and write through to the arrays.
+ */
+public class ParameterTable {
+    private static final int NONE = -1;
+
+    private final String[] fullIds;
+    private final String[] observedIds;
+    private final long[] hashKeys;
+    private final long fingerprint;
+    private final LongIntHashMap hashIndex;
+    private final int[] pidSlots;
+    private final int pidMask;
+
+    private final String[] names;
+    private final double[] values;
+    private final boolean[] learned;
+    private final RotoParameter[] views;
+
+    /**
+     * @param fullIds     IDs as reported by Bitwig
+     * @param observedIds IDs used to observe values
+     * @param hashKeys    parameter hashes as packed by {@link RotoParameter#toHashKey(byte[])}
+     * @param fingerprint fingerprint of the ID list, see {@link ParameterIndexStore#fingerprint(String[])}
+     */
+    public ParameterTable(final String[] fullIds, final String[] observedIds, final long[] hashKeys,
+        final long fingerprint) {
+        final int count = fullIds.length;
+        this.fullIds = fullIds;
+        this.observedIds = observedIds;
+        this.hashKeys = hashKeys;
+        this.fingerprint = fingerprint;
+        this.hashIndex = new LongIntHashMap(count);
+        for (int index = 0; index < count; index++) {
+            hashIndex.put(hashKeys[index], index);
+        }
+        this.pidSlots = new int[hashIndex.capacity()];
+        this.pidMask = pidSlots.length - 1;
+        Arrays.fill(pidSlots, NONE);
+        for (int index = 0; index < count; index++) {
+            insertPid(index);
+        }
+        this.names = new String[count];
+        this.values = new double[count];
+        this.learned = new boolean[count];
+        this.views = new RotoParameter[count];
+    }
+
+    public int size() {
+        return fullIds.length;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public String[] getObservedIds() {
+        return observedIds;
+    }
+
+    public int indexOfHash(final long hashKey) {
+        return hashIndex.get(hashKey);
+    }
+
+    /**
+     * @return index of the parameter with the given last path segment or -1
+     */
+    public int indexOfPid(final String pid) {
+        int slot = spread(pid.hashCode()) & pidMask;
+        while (pidSlots[slot] != NONE) {
+            if (pidMatches(pidSlots[slot], pid)) {
+                return pidSlots[slot];
+            }
+            slot = (slot + 1) & pidMask;
+        }
+        return NONE;
+    }
+
+    /**
+     * @return view on the parameter, created on first access
+     */
+    public RotoParameter getParameter(final int index) {
+        if (index < 0 || index >= views.length) {
+            return null;
+        }
+        if (views[index] == null) {
+            views[index] = new ParameterView(index);
+        }
+        return views[index];
+    }
+
+    public void setName(final int index, final String name) {
+        names[index] = name;
+    }
+
+    public double getValue(final int index) {
+        return values[index];
+    }
+
+    public void setValue(final int index, final double value) {
+        values[index] = value;
+    }
+
+    public void clearLearned() {
+        Arrays.fill(learned, false);
+    }
+
+    /**
+     * @return rough estimate of the heap held by the table in bytes, without the ID strings Bitwig owns
+     */
+    public long estimateSize() {
+        long size = 8L * hashKeys.length + 16L * pidSlots.length + 17L * names.length;
+        if (observedIds != fullIds) {
+            for (final String id : observedIds) {
+                size += 48 + id.length();
+            }
+        }
+        for (final String name : names) {
+            size += name != null ? 48 + name.length() : 0;
+        }
+        for (final RotoParameter view : views) {
+            size += view != null ? 160 : 0;
+        }
+        return size;
+    }
+
+    private void insertPid(final int index) {
+        final String id = fullIds[index];
+        final int start = id.lastIndexOf('/') + 1;
+        int hash = 0;
+        for (int i = start; i < id.length(); i++) {
+            hash = 31 * hash + id.charAt(i);
+        }
+        int slot = spread(hash) & pidMask;
+        while (pidSlots[slot] != NONE) {
+            if (pidMatches(pidSlots[slot], id, start)) {
+                // last one wins, same as a map put
+                pidSlots[slot] = index;
+                return;
+            }
+            slot = (slot + 1) & pidMask;
+        }
+        pidSlots[slot] = index;
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private boolean pidMatches(final int index, final String pid) {
+        final String id = fullIds[index];
+        final int start = id.lastIndexOf('/') + 1;
+        return id.length() - start == pid.length() && id.regionMatches(start, pid, 0, pid.length());
+    }
+
+    private boolean pidMatches(final int index, final String otherId, final int otherStart) {
+        final String id = fullIds[index];
+        final int start = id.lastIndexOf('/') + 1;
+        final int length = id.length() - start;
+        return length == otherId.length() - otherStart && id.regionMatches(start, otherId, otherStart, length);
+    }
+
+    private static byte[] toHash(final long hashKey) {
+        final byte[] hash = new byte[ParameterIndexStore.HASH_SIZE];
+        for (int i = hash.length - 1; i >= 0; i--) {
+            hash[hash.length - 1 - i] = (byte) ((hashKey >> (7 * i)) & 0x7F);
+        }
+        return hash;
+    }
+
+    private class ParameterView extends RotoParameter {
+        private ParameterView(final int index) {
+            super(index, fullIds[index], false, toHash(hashKeys[index]));
+        }
+
+        @Override
+        public String getName() {
+            return names[index];
+        }
+
+        @Override
+        public void setName(final String name) {
+            names[index] = name;
+        }
+
+        @Override
+        public double getValue() {
+            return values[index];
+        }
+
+        @Override
+        public void setValue(final double value) {
+            values[index] = value;
+        }
+
+        @Override
+        public boolean isLearned() {
+            return learned[index];
+        }
+
+        @Override
+        public void setLearned(final boolean learned) {
+            ParameterTable.this.learned[index] = learned;
+        }
+    }
+}
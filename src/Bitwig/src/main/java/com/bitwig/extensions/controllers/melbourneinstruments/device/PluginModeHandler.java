@@ -2,11 +2,18 @@ package com.bitwig.extensions.controllers.melbourneinstruments.device;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import com.bitwig.extension.controller.api.ControllerHost;
 import com.bitwig.extension.controller.api.CursorRemoteControlsPage;
 import com.bitwig.extension.controller.api.Device;
 import com.bitwig.extension.controller.api.DeviceBank;
@@ -18,24 +25,49 @@ import com.bitwig.extensions.controllers.melbourneinstruments.MainLayerHandler;
 import com.bitwig.extensions.controllers.melbourneinstruments.MidiProcessor;
 import com.bitwig.extensions.controllers.melbourneinstruments.RotoControlExtension;
 import com.bitwig.extensions.controllers.melbourneinstruments.RotoViewControl;
+import com.bitwig.extensions.controllers.melbourneinstruments.SysExFrame;
 import com.bitwig.extensions.controllers.melbourneinstruments.layer.ScrollViewSet;
 import com.bitwig.extensions.controllers.melbourneinstruments.value.FocusSource;
 import com.bitwig.extensions.framework.values.BooleanValueObject;
 
 public class PluginModeHandler implements ScrollViewSet {
     private static final Set<String> REMOTES_ONLY_DEVICES = Set.of("Polymer", "Filter+", "Grid FX", "Poly Grid");
+    private static final int HASH_WORKER_THREADS = 2;
+    private static final int LEARN_WINDOW_SIZE = 16;
+    private static final long HASH_WORKER_KEEP_ALIVE = 30;
+    // parameter requests arriving within this time after the first one belong to the same page
+    private static final int PAGE_ASSIGNMENT_TIME = 200;
+
+    private static class ParameterRoute {
+        private final String pid;
+        private int generation = -1;
+        private int index = -1;
+        private RotoControlParameter control;
+
+        private ParameterRoute(final String pid) {
+            this.pid = pid;
+        }
+    }
 
     private final MainLayerHandler mainHandler;
     private final MidiProcessor midiProcessor;
     private final DeviceBank deviceBank;
     private final PinnableCursorDevice cursorDevice;
 
-    private final Map<String, DeviceParameterSet> deviceParameterSetMap = new HashMap<>();
+    private final ParameterSetCache parameterSetCache = new ParameterSetCache(this::isParameterSetInUse);
     private final Map<String, RotoControlParameter> controlParamMap = new HashMap<>();
+    // Maps full incoming parameter ID to its resolved parameter and control
+    private final Map<String, ParameterRoute> parameterRoutes = new HashMap<>();
+    private int routeGeneration;
+    // observed full IDs in learn mode, least recently changed first
+    private final LinkedHashSet<String> learnWindow = new LinkedHashSet<>();
+    private final ParameterIndexStore parameterIndexStore;
+    // Hashes parameter IDs and reads and writes step profiles off the controller thread, idle threads terminate
+    private final ExecutorService hashWorker;
     private DeviceParameterSet activeParameterSet = null;
 
     private boolean inLearningMode;
-    private boolean pendingParamUpdate = false;
+    private boolean pageAssignmentPending;
     private int pluginPosition;
     private int numberOfPlugins;
     private int firstPlugin;
@@ -47,19 +79,28 @@ public class PluginModeHandler implements ScrollViewSet {
     private final DeviceState cursorDeviceState = new DeviceState(-1);
 
     private final LearnProcessor learnProcessor;
-    private final DirectParameterValueDisplayObserver paramValueObserver;
+    private final ObservedParameters observedParameters;
     private final MacroDevice macroDevice;
     private final MacroDevice trackDevice;
 
     public PluginModeHandler(final MainLayerHandler mainHandler, final MidiProcessor midiProcessor,
         final RotoViewControl viewControl) {
+        this(mainHandler, midiProcessor, viewControl, createHashWorker());
+    }
+
+    PluginModeHandler(final MainLayerHandler mainHandler, final MidiProcessor midiProcessor,
+        final RotoViewControl viewControl, final ExecutorService hashWorker) {
         this.mainHandler = mainHandler;
+        this.hashWorker = hashWorker;
         this.cursorDevice = viewControl.getCursorDevice();
         this.macroDevice = new MacroDevice(viewControl.getDeviceRemotes());
         this.trackDevice = new MacroDevice(viewControl.getTrackRemotes());
         this.midiProcessor = midiProcessor;
+        this.parameterIndexStore = ParameterIndexStore.createDefault(this::printFromWorker);
         deviceBank = viewControl.getDeviceBank();
-        this.learnProcessor = new LearnProcessor(midiProcessor, cursorDevice);
+        this.learnProcessor = new LearnProcessor(midiProcessor, cursorDevice,
+            StepProfileStore.createDefault(hashWorker, task -> midiProcessor.getHost().scheduleTask(task, 0),
+                this::printFromWorker));
         for (int i = 0; i < 8; i++) {
             final Device device = deviceBank.getItemAt(i);
             final DeviceState state = new DeviceState(i);
@@ -111,14 +152,16 @@ public class PluginModeHandler implements ScrollViewSet {
         bindMarcoDevice(macroDevice, remotes);
 
         cursorDevice.addDirectParameterNormalizedValueObserver(this::handleParameterValueChanged);
-        paramValueObserver = cursorDevice.addDirectParameterValueDisplayObserver(13, this::handValueDisplayChanged);
+        final DirectParameterValueDisplayObserver paramValueObserver =
+            cursorDevice.addDirectParameterValueDisplayObserver(13, this::handValueDisplayChanged);
+        observedParameters = new ObservedParameters(paramValueObserver);
     }
 
     private static void handlePluginScrollChange(final MidiProcessor midiProcessor, final int pos) {
         if (pos != -1) {
             return;
         }
-        midiProcessor.sendPluginCommand("03", pos);
+        midiProcessor.sendPluginCommand(0x03, pos);
     }
 
     private void bindMarcoDevice(final MacroDevice rotoDevice, final CursorRemoteControlsPage remotes) {
@@ -165,7 +208,7 @@ public class PluginModeHandler implements ScrollViewSet {
         rotoParameter.setExists(exists);
         if (mainHandler.singleMacroUpdateReady()) {
             if (!exists) {
-                midiProcessor.sendSysEx(rotoParameter.getSysExUnmap());
+                rotoParameter.sendUnmap(midiProcessor);
                 sendPluginSelect(cursorDeviceState.getIndex());
             } else {
                 sendMacroValues();
@@ -176,7 +219,7 @@ public class PluginModeHandler implements ScrollViewSet {
     private void setParamName(final RotoMacroParameter rotoParameter, final String name) {
         rotoParameter.setCurrentName(name);
         if (mainHandler.singleMacroUpdateReady() && rotoParameter.exists()) {
-            midiProcessor.sendSysEx(rotoParameter.getSysExNameChange());
+            rotoParameter.sendNameChange(midiProcessor);
         }
     }
 
@@ -250,22 +293,97 @@ public class PluginModeHandler implements ScrollViewSet {
         if (activeParameterSet == null) {
             return;
         }
-        activeParameterSet.registerParameterIds(ids);
-        final List<ParameterSettings> stashed = activeParameterSet.getStashedRequestedParameters();
+        final DeviceParameterSet parameterSet = activeParameterSet;
+        if (!parameterSet.beginRegistration(ids)) {
+            return;
+        }
+        final boolean isPlugin = parameterSet.isPlugin();
+        final ControllerHost host = midiProcessor.getHost();
+        hashWorker.execute(() -> {
+            try {
+                final ParameterTable table = parameterSet.buildTable(ids, isPlugin);
+                host.scheduleTask(() -> publishParameterTable(parameterSet, table), 0);
+            }
+            catch (final RuntimeException exception) {
+                printFromWorker("Parameter registration of %s failed: %s".formatted(parameterSet.getName(),
+                    exception.getMessage()));
+                host.scheduleTask(parameterSet::abortRegistration, 0);
+            }
+        });
+    }
+
+    /**
+     * Prints a message of a hash worker thread, the host is only called from the controller thread.
+     */
+    private void printFromWorker(final String message) {
+        midiProcessor.getHost().scheduleTask(() -> RotoControlExtension.println("%s", message), 0);
+    }
+
+    /**
+     * Stops the hash worker threads, registrations and step profile writes still running are dropped.
+     */
+    public void shutdown() {
+        hashWorker.shutdownNow();
+    }
+
+    private void publishParameterTable(final DeviceParameterSet parameterSet,
+        final ParameterTable table) {
+        parameterSet.publish(table);
+        parameterSetCache.updateWeight(parameterSet);
+        invalidateRoutes();
+        if (inLearningMode && parameterSet == activeParameterSet) {
+            learnProcessor.prefetch(parameterSet);
+        }
+        final List<ParameterSettings> stashed = parameterSet.getStashedRequestedParameters();
         if (!stashed.isEmpty()) {
-            for (final ParameterSettings stashParam : stashed) {
-                final RotoParameter parameter = activeParameterSet.getParameterByHash(stashParam.hashValue());
-                this.applyParameterToDevice(stashParam.controlType(), stashParam.pageIndex(), parameter);
+            if (parameterSet == activeParameterSet) {
+                for (final ParameterSettings stashParam : stashed) {
+                    final RotoParameter parameter = parameterSet.getParameterByHash(stashParam.hashValue());
+                    this.applyParameterToDevice(stashParam.controlType(), stashParam.pageIndex(), parameter);
+                }
             }
-            activeParameterSet.clearParameterRequestStash();
+            parameterSet.clearParameterRequestStash();
         }
     }
 
+    private boolean isParameterSetInUse(final DeviceParameterSet parameterSet) {
+        if (parameterSet == activeParameterSet) {
+            return true;
+        }
+        for (final DeviceState state : deviceStates) {
+            if (state.getParameterSet() == parameterSet) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public ParameterSetCache getParameterSetCache() {
+        return parameterSetCache;
+    }
+
+    private static ExecutorService createHashWorker() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(HASH_WORKER_THREADS, HASH_WORKER_THREADS,
+            HASH_WORKER_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "roto-parameter-hash");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private void handleCursorDeviceNameChanged(final String name) {
-        activeParameterSet = this.deviceParameterSetMap.computeIfAbsent(name,
-            key -> new DeviceParameterSet(name, cursorDevice.isPlugin().get())
+        activeParameterSet = parameterSetCache.get(name,
+            key -> new DeviceParameterSet(name, cursorDevice.isPlugin().get(), parameterIndexStore)
         );
         cursorDeviceState.setParameterSet(activeParameterSet);
+        parameterRoutes.clear();
+        clearControlParameters();
+        if (inLearningMode) {
+            learnWindow.clear();
+            observedParameters.clear();
+        }
         this.mainHandler.notifyDawPluginUpdate();
     }
 
@@ -289,8 +407,8 @@ public class PluginModeHandler implements ScrollViewSet {
         if (name.isBlank()) {
             state.setParameterSet(null);
         } else {
-            final DeviceParameterSet parameterSet = this.deviceParameterSetMap.computeIfAbsent(name,
-                key -> new DeviceParameterSet(name, cursorDevice.isPlugin().get())
+            final DeviceParameterSet parameterSet = parameterSetCache.get(name,
+                key -> new DeviceParameterSet(name, cursorDevice.isPlugin().get(), parameterIndexStore)
             );
             state.setParameterSet(parameterSet);
             mainHandler.markUpdateRequired(FocusSource.PLUGIN);
@@ -313,53 +431,101 @@ public class PluginModeHandler implements ScrollViewSet {
 
     public void setPluginLearnMode(final boolean inLearningMode) {
         this.inLearningMode = inLearningMode;
-        if (inLearningMode) {
-            paramValueObserver.setObservedParameterIds(activeParameterSet.getParameters());
-        } else {
-            paramValueObserver.setObservedParameterIds(new String[] {});
-            activeParameterSet.clearLearned();
+        learnWindow.clear();
+        // display values are only observed for parameters that get touched, see touchLearnWindow
+        observedParameters.clear();
+        if (!inLearningMode) {
+            controlParamMap.keySet().forEach(this::observeControlParameter);
+            learnProcessor.clearQueue();
+            if (activeParameterSet != null) {
+                activeParameterSet.clearLearned();
+            }
+        } else if (activeParameterSet != null && activeParameterSet.getParameterCount() > 0) {
+            learnProcessor.prefetch(activeParameterSet);
         }
     }
 
     public void confirmLearned(final int type, final int paramIndex) {
-        if (inLearningMode) {
+        if (inLearningMode && activeParameterSet != null) {
             RotoControlExtension.println(" CONFIRM LEARN %d index=%d", type, paramIndex);
             activeParameterSet.clearLearned();
         }
     }
 
     private void handValueDisplayChanged(final String id, final String value) {
-        final String pid = DeviceParameterSet.getLastSegment(id);
         //RotoControlExtension.println(" INCOMING %s %s", id, value);
-        final RotoParameter parameter = activeParameterSet.getParameter(pid);
-        if (parameter != null && inLearningMode) {
-            learnProcessor.captureDisplayValue(parameter, value);
-        } else if (!inLearningMode) {
-            final RotoControlParameter rotoParam = controlParamMap.get(pid);
-            if (rotoParam != null) {
-                rotoParam.setDisplayValue(value);
-            }
+        final ParameterRoute route = getRoute(id);
+        if (route.index != -1 && inLearningMode) {
+            learnProcessor.captureDisplayValue(activeParameterSet, route.pid, value);
+        } else if (!inLearningMode && route.control != null) {
+            route.control.setDisplayValue(value);
         }
     }
 
     private void handleParameterValueChanged(final String id, final double value) {
-        final String pid = DeviceParameterSet.getLastSegment(id);
-        final RotoParameter parameter = activeParameterSet.getParameter(pid);
-        if (parameter == null) {
+        final ParameterRoute route = getRoute(id);
+        if (route.index == -1) {
+            if (activeParameterSet != null && activeParameterSet.isRegistrationPending()) {
+                activeParameterSet.stashValue(route.pid, value);
+            }
             return;
         }
-        final double previousValue = parameter.getValue();
-        parameter.setValue(value);
+        final double previousValue = activeParameterSet.getValue(route.index);
+        activeParameterSet.setValue(route.index, value);
         if (inLearningMode) {
-            learnProcessor.captureValue(parameter, value, previousValue);
-        } else {
-            final RotoControlParameter rotoParam = controlParamMap.get(pid);
-            if (rotoParam != null) {
-                rotoParam.getValue().set(value);
+            touchLearnWindow(route.index);
+            learnProcessor.captureValue(activeParameterSet, activeParameterSet.getParameter(route.index), value,
+                previousValue);
+        } else if (route.control != null) {
+            route.control.getValue().set(value);
+        }
+    }
+
+    /**
+     * Keeps the display values of the most recently changed parameters observed while learning, instead of those of
+     * all parameters of the device. Parameters being probed stay in the window.
+     */
+    private void touchLearnWindow(final int index) {
+        final String id = activeParameterSet.getObservedId(index);
+        if (learnWindow.remove(id)) {
+            learnWindow.add(id);
+            return;
+        }
+        learnWindow.add(id);
+        observedParameters.add(id);
+        final Iterator<String> iterator = learnWindow.iterator();
+        while (learnWindow.size() > LEARN_WINDOW_SIZE && iterator.hasNext()) {
+            final String eldest = iterator.next();
+            if (!learnProcessor.isProbing(DeviceParameterSet.getLastSegment(eldest))) {
+                iterator.remove();
+                observedParameters.remove(eldest);
             }
         }
     }
 
+    /**
+     * Resolves the full ID of an incoming parameter report to a parameter index. Routes are created once per ID and
+     * only re-resolved after the active parameter set or the bound controls changed, so the lookup itself doesn't
+     * allocate.
+     */
+    private ParameterRoute getRoute(final String id) {
+        ParameterRoute route = parameterRoutes.get(id);
+        if (route == null) {
+            route = new ParameterRoute(DeviceParameterSet.getLastSegment(id));
+            parameterRoutes.put(id, route);
+        }
+        if (route.generation != routeGeneration) {
+            route.index = activeParameterSet != null ? activeParameterSet.indexOf(route.pid) : -1;
+            route.control = controlParamMap.get(route.pid);
+            route.generation = routeGeneration;
+        }
+        return route;
+    }
+
+    private void invalidateRoutes() {
+        routeGeneration++;
+    }
+
     public void navigatePluginBank(final int firstIndex) {
         firstPlugin = firstIndex;
         deviceBank.scrollPosition().set(firstPlugin);
@@ -369,6 +535,12 @@ public class PluginModeHandler implements ScrollViewSet {
         if (activeParameterSet == null) {
             return Optional.empty();
         }
+        if (!pageAssignmentPending) {
+            // a new page, controls it leaves empty must not keep the parameters of the previous one
+            pageAssignmentPending = true;
+            clearControlParameters();
+            midiProcessor.invokeDelayed(() -> pageAssignmentPending = false, PAGE_ASSIGNMENT_TIME);
+        }
         final RotoParameter parameter = activeParameterSet.getParameterByHash(setting.hashValue());
         if (parameter != null) {
             applyParameterToDevice(setting.controlType(), setting.pageIndex(), parameter);
@@ -385,32 +557,49 @@ public class PluginModeHandler implements ScrollViewSet {
         if (parameter == null) {
             return;
         }
-        if (!pendingParamUpdate) {
-            controlParamMap.clear();
-        }
         final RotoControlParameter controlParam = mainHandler.getParameter(pageIndex, controlType);
-
+        final String previousId = controlParam.getParamId();
+        if (controlParamMap.get(previousId) == controlParam) {
+            controlParamMap.remove(previousId);
+            if (!inLearningMode) {
+                unobserveControlParameter(previousId);
+            }
+        }
         controlParam.setParameter(parameter);
         controlParamMap.put(parameter.getId(), controlParam);
-        if (!pendingParamUpdate && !inLearningMode) {
-            pendingParamUpdate = true;
-            midiProcessor.invokeDelayed(this::updateParams, 200);
+        invalidateRoutes();
+        if (!inLearningMode) {
+            observeControlParameter(parameter.getId());
         }
     }
 
-    private void updateParams() {
-        List<String> ids = new ArrayList<>();
-        controlParamMap.values().stream().map(RotoControlParameter::getParamId).forEach(id -> {
-            ids.add("CONTENTS/ROOT_GENERIC_MODULE/%s".formatted(id));
-            ids.add("CONTENTS/%s".formatted(id));
-        });
-        //RotoControlExtension.println(" --------------- ");
-        //controlParamMap.values().forEach(pa -> {
-        //    RotoControlExtension.println(" > %d %s %s", pa.getIndex(), pa.getName(), pa.getParamId());
-        //});
-        final String[] idsToObserve = ids.stream().toArray(String[]::new);
-        paramValueObserver.setObservedParameterIds(idsToObserve);
-        pendingParamUpdate = false;
+    /**
+     * Unbinds all parameters from the controls, so reports of them are no longer routed to the controls.
+     */
+    private void clearControlParameters() {
+        if (!inLearningMode) {
+            controlParamMap.keySet().forEach(this::unobserveControlParameter);
+        }
+        controlParamMap.clear();
+        invalidateRoutes();
+    }
+
+    private void observeControlParameter(final String id) {
+        observedParameters.add("CONTENTS/ROOT_GENERIC_MODULE/%s".formatted(id));
+        observedParameters.add("CONTENTS/%s".formatted(id));
+    }
+
+    private void unobserveControlParameter(final String id) {
+        observedParameters.remove("CONTENTS/ROOT_GENERIC_MODULE/%s".formatted(id));
+        observedParameters.remove("CONTENTS/%s".formatted(id));
+    }
+
+    /**
+     * Hands changes of the observed parameters to Bitwig, called on flush. Controls are assigned one message at a
+     * time, so all assignments of a page switch end up in one update.
+     */
+    public void applyObservedParameters() {
+        observedParameters.apply();
     }
 
     @Override
@@ -421,6 +610,15 @@ public class PluginModeHandler implements ScrollViewSet {
         return true;
     }
 
+    @Override
+    public void setScrollSettledListener(final Runnable listener) {
+        macroDevice.setScrollSettledListener(() -> {
+            if (inMacroMode.get()) {
+                listener.run();
+            }
+        });
+    }
+
     @Override
     public void sendStates() {
         if (inMacroMode.get()) {
@@ -432,8 +630,8 @@ public class PluginModeHandler implements ScrollViewSet {
     }
 
     public void sendPluginCount(int firstIndex) {
-        midiProcessor.sendPluginCommand("02", Math.min(numberOfPlugins, 0x7F));
-        midiProcessor.sendPluginCommand("03", firstIndex);
+        midiProcessor.sendPluginCommand(0x02, Math.min(numberOfPlugins, 0x7F));
+        midiProcessor.sendPluginCommand(0x03, firstIndex);
     }
 
     public void sendPluginSelect(int position) {
@@ -449,12 +647,12 @@ public class PluginModeHandler implements ScrollViewSet {
         for (int i = 0; i < 8; i++) {
             if (firstPlugin + i == cursorPosition) {
                 if (cursorDeviceState.exists()) {
-                    midiProcessor.sendSysEx(getMacroUpdate());
+                    sendMacroDeviceUpdate();
                 }
             } else {
                 final DeviceState state = deviceStates.get(i);
                 if (state.exists()) {
-                    midiProcessor.sendSysEx(state.toSysExUpdate(firstIndex + i));
+                    state.sendUpdate(midiProcessor, firstIndex + i);
                 }
             }
         }
@@ -468,7 +666,7 @@ public class PluginModeHandler implements ScrollViewSet {
         for (int i = 0; i < 8; i++) {
             final DeviceState state = deviceStates.get(i);
             if (state.exists()) {
-                midiProcessor.sendSysEx(state.toSysExUpdate(firstIndex + i));
+                state.sendUpdate(midiProcessor, firstIndex + i);
             }
         }
         midiProcessor.endPluginDetail();
@@ -476,11 +674,15 @@ public class PluginModeHandler implements ScrollViewSet {
     }
 
 
-    private String getMacroUpdate() {
-        return "F0 00 22 03 02 0B 05 %02X %s %02X %s01 %02X F7".formatted(cursorDeviceState.getIndex(),
-            macroDevice.getSysExHash(), cursorDeviceState.isEnabled() ? 1 : 0, cursorDeviceState.getSysExName(),
-            macroDevice.getRemotePages()
-        );
+    private void sendMacroDeviceUpdate() {
+        midiProcessor.frame(MidiProcessor.CMD_ID_PLUGIN, 0x05) //
+            .value(cursorDeviceState.getIndex()) //
+            .bytes(macroDevice.getHash()) //
+            .value(cursorDeviceState.isEnabled()) //
+            .name(cursorDeviceState.getName(), SysExFrame.NAME_LENGTH) //
+            .value(1) //
+            .value(macroDevice.getRemotePages()) //
+            .send();
     }
 
     public MacroDevice getMacroDevice() {
@@ -488,14 +690,13 @@ public class PluginModeHandler implements ScrollViewSet {
     }
 
     public void sendMacroValues() {
-        //midiProcessor.sendSysEx(getMacroUpdate());
         if (!mainHandler.singleMacroUpdateReady()) {
             return;
         }
         final List<RotoMacroParameter> params = macroDevice.getRotoParameters();
         for (final RotoMacroParameter param : params) {
             if (param.exists()) {
-                midiProcessor.sendSysEx(param.getLearnSysEx());
+                param.sendLearn(midiProcessor);
             }
         }
     }
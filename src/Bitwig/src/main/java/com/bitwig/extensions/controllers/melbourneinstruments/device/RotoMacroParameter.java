@@ -3,12 +3,13 @@ package com.bitwig.extensions.controllers.melbourneinstruments.device;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.bitwig.extensions.controllers.melbourneinstruments.StringUtil;
+import com.bitwig.extensions.controllers.melbourneinstruments.MidiProcessor;
+import com.bitwig.extensions.controllers.melbourneinstruments.SysExFrame;
 
 public class RotoMacroParameter extends RotoParameter {
-    private static final String EMPTY_STEP = StringUtil.nameToSysEx("");
+    private static final String EMPTY_STEP = "";
     private boolean exists = true;
-    private String sysExCurrentName;
+    private String currentName;
     private final List<String> stepNames = new ArrayList<>();
     
     public RotoMacroParameter(final int index, final String name) {
@@ -17,7 +18,7 @@ public class RotoMacroParameter extends RotoParameter {
     }
     
     public void setCurrentName(final String currentName) {
-        this.sysExCurrentName = StringUtil.nameToSysEx(currentName);
+        this.currentName = currentName;
     }
     
     public void setExists(final boolean exists) {
@@ -43,19 +44,25 @@ public class RotoMacroParameter extends RotoParameter {
     }
     
     public String getDisplayName() {
-        return sysExCurrentName;
+        return currentName;
     }
     
     
-    public String getSysExUnmap() {
-        return "F0 00 22 03 02 0B 0E 01 %02X F7".formatted(index);
+    public void sendUnmap(final MidiProcessor midiProcessor) {
+        midiProcessor.frame(MidiProcessor.CMD_ID_PLUGIN, 0x0E).value(1).value(index).send();
     }
     
-    public String getLearnSysEx() {
+    @Override
+    protected SysExFrame learnFrame(final MidiProcessor midiProcessor) {
         final int parameterPos = (int) Math.round(value * 16383);
-        return "F0 00 22 03 02 0B 0A %02X %02X %s %02X %02X %02X %02X %02X %sF7".formatted(
-            0, index + 1, sysExHash, 1,
-            centerDetent ? 1 : 0, steps == -1 ? 0 : steps, parameterPos >> 7, parameterPos & 0x7F, getDisplayName());
+        return midiProcessor.frame(MidiProcessor.CMD_ID_PLUGIN, 0x0A) //
+            .value(0).value(index + 1) //
+            .bytes(hash) //
+            .value(1) //
+            .value(centerDetent) //
+            .value(steps == -1 ? 0 : steps) //
+            .value14(parameterPos) //
+            .name(getDisplayName());
     }
     
     
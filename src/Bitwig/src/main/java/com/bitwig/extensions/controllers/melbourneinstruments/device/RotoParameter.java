@@ -1,9 +1,10 @@
 package com.bitwig.extensions.controllers.melbourneinstruments.device;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
+import com.bitwig.extensions.controllers.melbourneinstruments.MidiProcessor;
 import com.bitwig.extensions.controllers.melbourneinstruments.StringUtil;
+import com.bitwig.extensions.controllers.melbourneinstruments.SysExFrame;
 
 public class RotoParameter {
     private final String id;
@@ -12,9 +13,8 @@ public class RotoParameter {
     protected int index;
     protected boolean centerDetent = false;
 
-    protected final String sysExHash;
-    private final String refHash;
-    protected String sysExName;
+    protected final byte[] hash;
+    private final long hashKey;
 
     private boolean isLearned;
     protected int steps = 0;
@@ -23,14 +23,20 @@ public class RotoParameter {
     protected final boolean isMacro;
 
     public RotoParameter(final int index, final String fullId, final boolean isMacro) {
+        this(index, fullId, isMacro, StringUtil.getPluginHash(fullId, 6));
+    }
+
+    /**
+     * @param hash precomputed hash of the full ID
+     */
+    public RotoParameter(final int index, final String fullId, final boolean isMacro, final byte[] hash) {
         this.index = index;
         this.id = getLastSegment(fullId);
         this.fullId = fullId;
         this.isMacro = isMacro;
 
-        final List<String> hashList = StringUtil.createHash(fullId, 6);
-        this.sysExHash = hashList.stream().collect(Collectors.joining(" "));
-        this.refHash = hashList.stream().collect(Collectors.joining(""));
+        this.hash = hash;
+        this.hashKey = toHashKey(hash);
     }
 
     public String getName() {
@@ -42,7 +48,6 @@ public class RotoParameter {
     }
 
     public void setName(final String name) {
-        this.sysExName = StringUtil.nameToSysEx(name);
         this.name = name;
     }
 
@@ -66,8 +71,19 @@ public class RotoParameter {
         return id;
     }
 
-    public String getRefHash() {
-        return refHash;
+    public long getHashKey() {
+        return hashKey;
+    }
+    
+    /**
+     * Packs the 7-bit hash bytes into a long, same layout as the hash in incoming parameter requests.
+     */
+    public static long toHashKey(final byte[] hash) {
+        long key = 0;
+        for (final byte value : hash) {
+            key = (key << 7) | (value & 0x7F);
+        }
+        return key;
     }
 
     public void setSteps(final int steps) {
@@ -75,42 +91,38 @@ public class RotoParameter {
     }
 
     public String getDisplayName() {
-        return sysExName;
-    }
-
-    public String getSysExNameChange() {
-        return "F0 00 22 03 02 0B 0F %02X %02X %s %sF7".formatted(0, index + 1, sysExHash, getDisplayName());
-    }
-
-    public String getSysExName(final String value) {
-        return "F0 00 22 03 02 0B 0F %02X %02X %s %sF7".formatted(
-            0, index + 1, sysExHash, StringUtil.nameToSysEx(value));
+        return getName();
     }
 
-    public String getSysExValueString(final String value) {
-        return "F0 00 22 03 02 0A 0F %02X %02X %sF7".formatted(0, index, StringUtil.nameToSysEx(value));
+    public void sendNameChange(final MidiProcessor midiProcessor) {
+        midiProcessor.frame(MidiProcessor.CMD_ID_PLUGIN, 0x0F) //
+            .value(0).value(index + 1).bytes(hash).name(getDisplayName()).sendState(index + 1);
     }
 
-    public String getLearnSysEx() {
-        final int parameterPos = (int) Math.round(value * 16383);
-        return "F0 00 22 03 02 0B 0A %02X %02X %s %02X %02X %02X %02X %02X %sF7".formatted(index >> 7, index & 0x7F,
-            sysExHash, isMacro ? 1 : 0, centerDetent ? 1 : 0, steps == -1 ? 0 : steps, parameterPos >> 7,
-            parameterPos & 0x7F, sysExName
-        );
+    public void sendLearn(final MidiProcessor midiProcessor) {
+        learnFrame(midiProcessor).send();
     }
 
-    public String getLearnSysEx(final List<String> stepNames) {
-        final int parameterPos = (int) Math.round(value * 16383);
-        if (stepNames.size() > 16) {
-            return "F0 00 22 03 02 0B 0A %02X %02X %s %02X %02X %02X %02X %02X %sF7".formatted(index >> 7, index & 0x7F,
-                sysExHash, isMacro ? 1 : 0, centerDetent ? 1 : 0, steps == -1 ? 0 : steps, parameterPos >> 7,
-                parameterPos & 0x7F, sysExName
-            );
+    public void sendLearn(final MidiProcessor midiProcessor, final List<String> stepNames) {
+        final SysExFrame frame = learnFrame(midiProcessor);
+        if (stepNames.size() <= 16) {
+            for (final String stepName : stepNames) {
+                frame.name(stepName);
+            }
         }
-        return "F0 00 22 03 02 0B 0A %02X %02X %s %02X %02X %02X %02X %02X %s%sF7".formatted(index >> 7, index & 0x7F,
-            sysExHash, isMacro ? 1 : 0, centerDetent ? 1 : 0, steps == -1 ? 0 : steps, parameterPos >> 7,
-            parameterPos & 0x7F, sysExName, stepNames.stream().collect(Collectors.joining(""))
-        );
+        frame.send();
+    }
+
+    protected SysExFrame learnFrame(final MidiProcessor midiProcessor) {
+        final int parameterPos = (int) Math.round(getValue() * 16383);
+        return midiProcessor.frame(MidiProcessor.CMD_ID_PLUGIN, 0x0A) //
+            .value14(index) //
+            .bytes(hash) //
+            .value(isMacro) //
+            .value(centerDetent) //
+            .value(steps == -1 ? 0 : steps) //
+            .value14(parameterPos) //
+            .name(getDisplayName());
     }
 
     public static String getLastSegment(final String path) {
@@ -1,71 +1,229 @@
 package com.bitwig.extensions.controllers.melbourneinstruments.device;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-
-import com.bitwig.extensions.controllers.melbourneinstruments.RotoControlExtension;
-import com.bitwig.extensions.controllers.melbourneinstruments.StringUtil;
+import java.util.Map;
+import java.util.TreeMap;
 
+/**
+ * Finds the steps of a parameter by probing it at selected positions and comparing the display values. A few probes
+ * spread over the range are refined by probing the middle of every interval as long as each of them shows a new
+ * display value and the parameter reports back the exact positions it was set to. Once this has produced more than
+ * {@link #MAX_STEPS} different values the parameter is continuous, a stepped parameter with up to {@link #MAX_STEPS}
+ * steps shows a repeated value before. Then intervals whose ends show different values are bisected until the boundary
+ * between two steps is known within {@link #BOUNDARY_RESOLUTION}. Display values are assumed to not repeat, i.e. an
+ * interval with the same value at both ends has no steps in between.
+ * <p>
+ * For each probe the caller sets the parameter to {@link #nextProbe()}, feeds the reported value and display value and
+ * calls {@link #completeProbe()} once it has waited long enough. A probe that gets no display value shows the same
+ * one as the previous probe.
+ */
 public class StepDetector {
-    private final HashMap<Integer, String> rasterValues = new HashMap<>();
-    private final Set<Double> distinctValues = new HashSet<>();
+    public static final double NO_PROBE = -1;
+    public static final int MAX_STEPS = 0x18;
+    private static final double[] INITIAL_PROBES = {0.0, 1.0, 0.5, 0.25, 0.75};
+    private static final double BOUNDARY_RESOLUTION = 1.0 / 128;
+    private static final double VALUE_TOLERANCE = 0.001;
+
+    private enum Phase {
+        CONTINUOUS_CHECK,
+        BISECT,
+        DONE
+    }
 
-    private int currentRasterValue;
+    // probe position to display value
+    private final TreeMap<Double, String> displayValues = new TreeMap<>();
+    // display value to the number of probes showing it, kept up to date so planning doesn't collect the values again
+    private final Map<String, Integer> valueCounts = new HashMap<>();
+    private final ArrayDeque<Double> plannedProbes = new ArrayDeque<>();
+
+    private Phase phase = Phase.DONE;
     private String paramId;
-    private boolean expectDisplayValue = false;
+    private boolean continuous;
+    private boolean snapped;
+    private int probeCount;
+    private String lastDisplayValue;
+    private double currentProbe = NO_PROBE;
+    private double probeValue;
+    private String probeDisplayValue;
 
     public void init(final String paramId) {
-        rasterValues.clear();
-        distinctValues.clear();
         this.paramId = paramId;
-        expectDisplayValue = false;
+        displayValues.clear();
+        valueCounts.clear();
+        plannedProbes.clear();
+        phase = Phase.CONTINUOUS_CHECK;
+        continuous = false;
+        snapped = false;
+        probeCount = 0;
+        lastDisplayValue = null;
+        currentProbe = NO_PROBE;
+        for (final double position : INITIAL_PROBES) {
+            plannedProbes.add(position);
+        }
+    }
+
+    /**
+     * @return the position to probe next or {@link #NO_PROBE} if detection is complete
+     */
+    public double nextProbe() {
+        if (plannedProbes.isEmpty()) {
+            planProbes();
+        }
+        if (plannedProbes.isEmpty()) {
+            phase = Phase.DONE;
+            return NO_PROBE;
+        }
+        currentProbe = plannedProbes.poll();
+        probeValue = Double.NaN;
+        probeDisplayValue = null;
+        probeCount++;
+        return currentProbe;
     }
 
     public void setValue(final double value) {
-        final int raster = (int) Math.round(value * LearnProcessor.STEPS);
-        distinctValues.add(value);
-        if (expectDisplayValue) {
-            rasterValues.put(currentRasterValue, "%f".formatted(value));
+        if (currentProbe != NO_PROBE) {
+            probeValue = value;
         }
-        currentRasterValue = raster;
-        expectDisplayValue = true;
     }
 
     public void setValueString(final String valueString) {
-        RotoControlExtension.println(" Match %s = %s",currentRasterValue, valueString);
-        if (!rasterValues.containsKey(currentRasterValue)) {
-            rasterValues.put(currentRasterValue, valueString);
+        //RotoControlExtension.println(" Match %s = %s", currentProbe, valueString);
+        lastDisplayValue = valueString;
+        if (currentProbe != NO_PROBE) {
+            probeDisplayValue = valueString;
+        }
+    }
+
+    public void completeProbe() {
+        if (currentProbe == NO_PROBE) {
+            return;
+        }
+        final String displayValue;
+        if (probeDisplayValue != null) {
+            displayValue = probeDisplayValue;
+        } else if (lastDisplayValue == null && !Double.isNaN(probeValue)) {
+            // parameter without display values
+            displayValue = "%f".formatted(probeValue);
+        } else {
+            displayValue = lastDisplayValue != null ? lastDisplayValue : "";
+        }
+        if (Double.isNaN(probeValue) || Math.abs(probeValue - currentProbe) > VALUE_TOLERANCE) {
+            snapped = true;
+        }
+        final String replaced = displayValues.put(currentProbe, displayValue);
+        if (replaced != null) {
+            valueCounts.computeIfPresent(replaced, (value, count) -> count > 1 ? count - 1 : null);
+        }
+        valueCounts.merge(displayValue, 1, Integer::sum);
+        currentProbe = NO_PROBE;
+    }
+
+    private void planProbes() {
+        switch (phase) {
+            case CONTINUOUS_CHECK -> {
+                if (snapped || getDistinctValues() < displayValues.size()) {
+                    phase = Phase.BISECT;
+                    planBisection();
+                } else if (getDistinctValues() > MAX_STEPS) {
+                    continuous = true;
+                    phase = Phase.DONE;
+                } else {
+                    planMidpoints();
+                }
+            }
+            case BISECT -> planBisection();
+            case DONE -> {
+            }
+        }
+    }
+
+    private void planMidpoints() {
+        Double previous = null;
+        for (final Double position : displayValues.keySet()) {
+            if (previous != null) {
+                plannedProbes.add((previous + position) / 2);
+            }
+            previous = position;
+        }
+    }
+
+    private void planBisection() {
+        if (getDistinctValues() > MAX_STEPS) {
+            continuous = true;
+            return;
+        }
+        Map.Entry<Double, String> previous = null;
+        for (final Map.Entry<Double, String> entry : displayValues.entrySet()) {
+            if (previous != null && !previous.getValue().equals(entry.getValue())
+                && entry.getKey() - previous.getKey() > BOUNDARY_RESOLUTION) {
+                plannedProbes.add((previous.getKey() + entry.getKey()) / 2);
+            }
+            previous = entry;
         }
-        expectDisplayValue = false;
     }
 
     public String getParamId() {
         return paramId;
     }
 
+    /**
+     * @return true if the parameter has no steps or more than {@link #MAX_STEPS}
+     */
+    public boolean isContinuous() {
+        return continuous;
+    }
+
+    public boolean isComplete() {
+        return phase == Phase.DONE;
+    }
+
     public int getNrOfSteps() {
-        return rasterValues.size();
+        return getStepNames().size();
+    }
+
+    public int getProbeCount() {
+        return probeCount;
     }
 
     public int getDistinctValues() {
-        return distinctValues.size();
+        return valueCounts.size();
     }
 
+    /**
+     * @return display values of the steps in ascending order, for a continuous parameter those of the probes
+     */
     public List<String> getStepNames() {
-        return rasterValues.keySet().stream().sorted().map(rasterValues::get).toList();
+        final List<String> stepNames = new ArrayList<>();
+        for (final String displayValue : displayValues.values()) {
+            if (stepNames.isEmpty() || !stepNames.get(stepNames.size() - 1).equals(displayValue)) {
+                stepNames.add(displayValue);
+            }
+        }
+        return stepNames;
     }
 
-    public List<String> getStepSysExNames() {
-        return rasterValues.keySet().stream() //
-            .sorted() //
-            .map(rasterValues::get)//
-            .map(StringUtil::nameToSysEx).toList();
+    /**
+     * @return positions where one step ends and the next one starts, within {@link #BOUNDARY_RESOLUTION}
+     */
+    public List<Double> getBoundaries() {
+        final List<Double> boundaries = new ArrayList<>();
+        Map.Entry<Double, String> previous = null;
+        for (final Map.Entry<Double, String> entry : displayValues.entrySet()) {
+            if (previous != null && !previous.getValue().equals(entry.getValue())) {
+                boundaries.add((previous.getKey() + entry.getKey()) / 2);
+            }
+            previous = entry;
+        }
+        return boundaries;
     }
 
     public void registerCapture() {
         paramId = null;
-        expectDisplayValue = false;
+        currentProbe = NO_PROBE;
+        plannedProbes.clear();
+        phase = Phase.DONE;
     }
 }
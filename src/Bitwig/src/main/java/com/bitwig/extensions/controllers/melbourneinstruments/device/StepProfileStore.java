@@ -0,0 +1,242 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.device;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Persists the learned step profiles of device parameters, so learning a parameter again doesn't need to sweep it.
+ * One file per device named after the device hash. Bitwig doesn't report plugin versions, so a device's profiles are
+ * only used while the fingerprint of its parameter ID list and its parameter count stay the same, anything else
+ * discards them. A plugin update that only changes the steps of a parameter is caught by the learn processor, which
+ * removes a profile once the parameter shows a display value that isn't one of its step names.
+ * <p>
+ * Files are read and written on a worker, the profiles themselves are only accessed on the controller thread. A
+ * device's file is loaded by {@link #prefetch(DeviceParameterSet)} or the first access, until it has arrived the device
+ * has no profiles. Each device has at most one write in flight, changes made meanwhile are written together after it.
+ * <p>
+ * File layout: int magic, int version, UTF name, long fingerprint, int parameter count, int profile count, then per
+ * profile UTF parameter ID, int steps, boolean center detent, int step name count and the UTF step names.
+ */
+public class StepProfileStore {
+    private static final int MAGIC = 0x52435350;
+    private static final int VERSION = 1;
+
+    public record StepProfile(int steps, boolean centerDetent, List<String> stepNames) {
+    }
+
+    private static class DeviceProfiles {
+        private final String name;
+        private final byte[] hash;
+        private final long fingerprint;
+        private final int parameterCount;
+        private final Map<String, StepProfile> profiles = new HashMap<>();
+        private boolean loaded;
+        private boolean saving;
+        private boolean changed;
+
+        private DeviceProfiles(final DeviceParameterSet parameterSet) {
+            this.name = parameterSet.getName();
+            this.hash = parameterSet.getHash();
+            this.fingerprint = parameterSet.getFingerprint();
+            this.parameterCount = parameterSet.getParameterCount();
+        }
+    }
+
+    private final Path directory;
+    private final Executor worker;
+    private final Executor controllerThread;
+    // Loads and saves run on the worker, so errors are handed to the owner instead of the host console
+    private final Consumer<String> errorReporter;
+    private final Map<String, DeviceProfiles> devices = new HashMap<>();
+
+    /**
+     * @param worker runs the file access
+     * @param controllerThread runs the tasks that hand loaded profiles and completed writes back
+     */
+    public StepProfileStore(final Path directory, final Executor worker, final Executor controllerThread,
+        final Consumer<String> errorReporter) {
+        this.directory = directory;
+        this.worker = worker;
+        this.controllerThread = controllerThread;
+        this.errorReporter = errorReporter;
+    }
+
+    public static StepProfileStore createDefault(final Executor worker, final Executor controllerThread,
+        final Consumer<String> errorReporter) {
+        return new StepProfileStore(Path.of(System.getProperty("user.home"), ".roto-control", "step-profiles"), worker,
+            controllerThread, errorReporter);
+    }
+
+    /**
+     * Starts loading the profiles of the device, so they are available once its parameters get touched.
+     */
+    public void prefetch(final DeviceParameterSet parameterSet) {
+        getProfiles(parameterSet);
+    }
+
+    /**
+     * @return the stored profile of the parameter or null, also while the profiles of the device are being loaded
+     */
+    public StepProfile get(final DeviceParameterSet parameterSet, final String pid) {
+        return getProfiles(parameterSet).profiles.get(pid);
+    }
+
+    public void put(final DeviceParameterSet parameterSet, final String pid, final StepProfile profile) {
+        final DeviceProfiles deviceProfiles = getProfiles(parameterSet);
+        deviceProfiles.profiles.put(pid, profile);
+        save(deviceProfiles);
+    }
+
+    /**
+     * Drops the stored profile of a parameter that no longer matches it, so it gets learned again.
+     */
+    public void remove(final DeviceParameterSet parameterSet, final String pid) {
+        final DeviceProfiles deviceProfiles = getProfiles(parameterSet);
+        if (deviceProfiles.profiles.remove(pid) != null) {
+            save(deviceProfiles);
+        }
+    }
+
+    private DeviceProfiles getProfiles(final DeviceParameterSet parameterSet) {
+        final DeviceProfiles cached = devices.get(parameterSet.getName());
+        if (cached != null && cached.fingerprint == parameterSet.getFingerprint()
+            && cached.parameterCount == parameterSet.getParameterCount()) {
+            return cached;
+        }
+        final DeviceProfiles deviceProfiles = new DeviceProfiles(parameterSet);
+        devices.put(deviceProfiles.name, deviceProfiles);
+        worker.execute(() -> {
+            final Map<String, StepProfile> loaded = load(deviceProfiles);
+            controllerThread.execute(() -> completeLoad(deviceProfiles, loaded));
+        });
+        return deviceProfiles;
+    }
+
+    private void completeLoad(final DeviceProfiles deviceProfiles, final Map<String, StepProfile> loaded) {
+        // profiles learned while loading are newer than the stored ones
+        loaded.forEach(deviceProfiles.profiles::putIfAbsent);
+        deviceProfiles.loaded = true;
+        if (deviceProfiles.changed) {
+            deviceProfiles.changed = false;
+            save(deviceProfiles);
+        }
+    }
+
+    private void save(final DeviceProfiles deviceProfiles) {
+        if (!deviceProfiles.loaded || deviceProfiles.saving) {
+            // written once the file has been loaded or the write in flight is done
+            deviceProfiles.changed = true;
+            return;
+        }
+        deviceProfiles.saving = true;
+        final Map<String, StepProfile> snapshot = Map.copyOf(deviceProfiles.profiles);
+        worker.execute(() -> {
+            write(deviceProfiles, snapshot);
+            controllerThread.execute(() -> completeSave(deviceProfiles));
+        });
+    }
+
+    private void completeSave(final DeviceProfiles deviceProfiles) {
+        deviceProfiles.saving = false;
+        if (deviceProfiles.changed) {
+            deviceProfiles.changed = false;
+            save(deviceProfiles);
+        }
+    }
+
+    private Map<String, StepProfile> load(final DeviceProfiles deviceProfiles) {
+        final Map<String, StepProfile> profiles = new HashMap<>();
+        final Path file = profileFile(deviceProfiles.hash);
+        if (!Files.isRegularFile(file)) {
+            return profiles;
+        }
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(deviceProfiles.name)
+                || in.readLong() != deviceProfiles.fingerprint || in.readInt() != deviceProfiles.parameterCount) {
+                return profiles;
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final String pid = in.readUTF();
+                final int steps = in.readInt();
+                final boolean centerDetent = in.readBoolean();
+                final int nameCount = in.readInt();
+                final List<String> stepNames = new ArrayList<>(nameCount);
+                for (int j = 0; j < nameCount; j++) {
+                    stepNames.add(in.readUTF());
+                }
+                profiles.put(pid, new StepProfile(steps, centerDetent, List.copyOf(stepNames)));
+            }
+        }
+        catch (final IOException exception) {
+            errorReporter.accept("Step profiles %s not readable: %s".formatted(file, exception.getMessage()));
+            profiles.clear();
+        }
+        return profiles;
+    }
+
+    private void write(final DeviceProfiles deviceProfiles, final Map<String, StepProfile> profiles) {
+        final Path file = profileFile(deviceProfiles.hash);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(directory);
+            tempFile = Files.createTempFile(directory, "steps", ".tmp");
+            try (final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(deviceProfiles.name);
+                out.writeLong(deviceProfiles.fingerprint);
+                out.writeInt(deviceProfiles.parameterCount);
+                out.writeInt(profiles.size());
+                for (final Map.Entry<String, StepProfile> entry : profiles.entrySet()) {
+                    final StepProfile profile = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(profile.steps());
+                    out.writeBoolean(profile.centerDetent());
+                    out.writeInt(profile.stepNames().size());
+                    for (final String stepName : profile.stepNames()) {
+                        out.writeUTF(stepName);
+                    }
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (final IOException exception) {
+            errorReporter.accept("Step profiles %s not written: %s".formatted(file, exception.getMessage()));
+            deleteQuietly(tempFile);
+        }
+    }
+
+    private static void deleteQuietly(final Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (final IOException exception) {
+            // nothing left to do, the next save uses a new temp file
+        }
+    }
+
+    private Path profileFile(final byte[] deviceHash) {
+        final StringBuilder fileName = new StringBuilder();
+        for (final byte value : deviceHash) {
+            fileName.append("%02x".formatted(value));
+        }
+        return directory.resolve(fileName.append(".steps").toString());
+    }
+}
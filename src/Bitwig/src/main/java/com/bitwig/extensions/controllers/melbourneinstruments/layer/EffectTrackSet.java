@@ -6,7 +6,7 @@ import com.bitwig.extension.controller.api.SendBank;
 import com.bitwig.extension.controller.api.Track;
 import com.bitwig.extension.controller.api.TrackBank;
 import com.bitwig.extensions.controllers.melbourneinstruments.MidiProcessor;
-import com.bitwig.extensions.controllers.melbourneinstruments.StringUtil;
+import com.bitwig.extensions.controllers.melbourneinstruments.SysExFrame;
 import com.bitwig.extensions.controllers.melbourneinstruments.states.MasterEfxTrackBank;
 import com.bitwig.extensions.framework.values.BasicIntegerValue;
 import com.bitwig.extensions.framework.values.BooleanValueObject;
@@ -18,18 +18,21 @@ public class EffectTrackSet implements ScrollViewSet {
 
     private int scrollPosition = 0;
 
-
-    private static final String EMPTY_SYSEX_NAME = StringUtil.toSysExName("");
     private final BasicIntegerValue sendCount;
     private final MidiProcessor midiProcessor;
     private final BooleanValueObject masterSelected;
     private final BooleanValueObject trackMode;
+    private Runnable scrollSettledListener = () -> {};
+    // send count and send names as last sent
+    private int sentSendCount = -1;
+    private int sentOffset = -1;
+    private final String[] sentNames = new String[8];
 
 
     public EffectTrackSet(final CursorTrack cursorTrack, final MasterEfxTrackBank masterEfx,
         final MidiProcessor midiProcessor, final BooleanValueObject trackMode) {
         effectBank = cursorTrack.sendBank();
-        effectBank.scrollPosition().markInterested();
+        effectBank.scrollPosition().addValueObserver(this::handleScrollPositionChange);
         this.sendCount = masterEfx.getSendCount();
         this.masterSelected = masterEfx.getMasterSelected();
         this.midiProcessor = midiProcessor;
@@ -38,9 +41,31 @@ public class EffectTrackSet implements ScrollViewSet {
 
     @Override
     public void sendStates() {
-        midiProcessor.sendMixCommand("03", trackMode.get() && masterSelected.get() ? 0 : sendCount.get());
+        sendSendCount();
+        sendSendStates(this.effectBank, sendSection * 6);
+    }
+
+    /**
+     * Only resends the send count and the send names if they differ from what was last sent. Used when the tracks of a
+     * mix set change, requested send updates still send everything.
+     */
+    public void sendChangedSendStates() {
+        if (getSendCount() != sentSendCount) {
+            sendSendCount();
+        }
         final int offset = sendSection * 6;
-        midiProcessor.sendSysEx(getSendStates(this.effectBank, offset));
+        if (offset != sentOffset || namesChanged(this.effectBank, offset)) {
+            sendSendStates(this.effectBank, offset);
+        }
+    }
+
+    private int getSendCount() {
+        return trackMode.get() && masterSelected.get() ? 0 : sendCount.get();
+    }
+
+    private void sendSendCount() {
+        sentSendCount = getSendCount();
+        midiProcessor.sendMixCommand(0x03, sentSendCount);
     }
 
     @Override
@@ -48,30 +73,52 @@ public class EffectTrackSet implements ScrollViewSet {
         return scrollPosition == effectBank.scrollPosition().get();
     }
 
-    public void updateNames(final TrackBank trackBank) {
-        final String sendStates = getSendStates(trackBank);
-        midiProcessor.sendSysEx(sendStates);
+    private void handleScrollPositionChange(final int position) {
+        if (scrollInPlace()) {
+            scrollSettledListener.run();
+        }
     }
 
-    private String getSendStates(final TrackBank trackBank) {
-        final StringBuilder efxString = new StringBuilder();
-        efxString.append("%02X ".formatted(trackBank.scrollPosition().get()));
+    @Override
+    public void setScrollSettledListener(final Runnable listener) {
+        this.scrollSettledListener = listener;
+    }
+
+    public void updateNames(final TrackBank trackBank) {
+        final SysExFrame frame = midiProcessor.frame(MidiProcessor.CMD_ID_MIXER, 0x08);
+        frame.value(trackBank.scrollPosition().get());
         for (int i = 0; i < 8; i++) {
             final Track item = trackBank.getItemAt(i);
-            efxString.append(item.exists().get() ? StringUtil.toSysExName(item.name().get()) : EMPTY_SYSEX_NAME);
+            frame.name(item.exists().get() ? item.name().get() : "", SysExFrame.NAME_LENGTH);
         }
-        return "F0 00 22 03 02 0C 08 %sF7".formatted(efxString.toString());
+        frame.send();
+        // the hardware now shows other names in place of the send names
+        sentOffset = -1;
+    }
+
+    private static String getSendName(final SendBank effectBank, final int index) {
+        final Send item = effectBank.getItemAt(index);
+        return item.exists().get() ? item.name().get() : "";
     }
 
+    private boolean namesChanged(final SendBank effectBank, final int offset) {
+        for (int i = 0; i < 8; i++) {
+            if (!getSendName(effectBank, offset + i).equals(sentNames[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-    private String getSendStates(final SendBank effectBank, final int offset) {
-        final StringBuilder efxString = new StringBuilder();
-        efxString.append("%02X ".formatted(offset));
-        for (int i = offset; i < offset + 8; i++) {
-            final Send item = effectBank.getItemAt(i);
-            efxString.append(item.exists().get() ? StringUtil.toSysExName(item.name().get()) : EMPTY_SYSEX_NAME);
+    private void sendSendStates(final SendBank effectBank, final int offset) {
+        final SysExFrame frame = midiProcessor.frame(MidiProcessor.CMD_ID_MIXER, 0x08);
+        frame.value(offset);
+        for (int i = 0; i < 8; i++) {
+            sentNames[i] = getSendName(effectBank, offset + i);
+            frame.name(sentNames[i], SysExFrame.NAME_LENGTH);
         }
-        return "F0 00 22 03 02 0C 08 %sF7".formatted(efxString.toString());
+        frame.send();
+        sentOffset = offset;
     }
 
     public void setSendSection(final int section) {
@@ -5,19 +5,26 @@ import com.bitwig.extension.controller.api.TrackBank;
 import com.bitwig.extensions.controllers.melbourneinstruments.MidiProcessor;
 import com.bitwig.extensions.controllers.melbourneinstruments.control.RotoButton;
 import com.bitwig.extensions.controllers.melbourneinstruments.control.RotoKnob;
+import com.bitwig.extensions.controllers.melbourneinstruments.states.ProjectTrackMirror;
+import com.bitwig.extensions.controllers.melbourneinstruments.states.TrackState;
 import com.bitwig.extensions.framework.Layers;
 import com.bitwig.extensions.framework.values.BooleanValueObject;
 
 public class MainMixLayerSet extends MixLayerSet {
     
+    private final ProjectTrackMirror trackMirror;
+    private RotoButton[] buttons;
+    
     public MainMixLayerSet(final Layers layers, final MidiProcessor midiProcessor, final String name,
-        final TrackBank trackBank, final EffectTrackSet effectTrackSet) {
+        final TrackBank trackBank, final EffectTrackSet effectTrackSet, final ProjectTrackMirror trackMirror) {
         super(layers, midiProcessor, name, trackBank, effectTrackSet);
+        this.trackMirror = trackMirror;
     }
     
     @Override
     public void bind(final RotoButton[] buttons, final RotoKnob[] knobs, final Runnable updateCall,
         final BooleanValueObject touchAutomationActive) {
+        this.buttons = buttons;
         trackBank.itemCount().addValueObserver(count -> {
             setTrackNumber(count);
             updateCall.run();
@@ -31,6 +38,51 @@ public class MainMixLayerSet extends MixLayerSet {
         }
     }
     
+    /**
+     * If the new page is mirrored, the track details and button lights are sent right away from the mirror. The bank
+     * lands later with the same values, so the deferred update only sends what changed in the meantime.
+     */
+    @Override
+    public void setTrackOffset(final int position) {
+        super.setTrackOffset(position);
+        if (scrollInPlace() || !trackMirror.covers(firstIndex, states.size())) {
+            return;
+        }
+        for (int i = 0; i < states.size(); i++) {
+            final int index = firstIndex + i;
+            final TrackState state = states.get(i);
+            if (index < trackMirror.getTrackCount()) {
+                state.copyFrom(trackMirror.getState(index));
+            } else {
+                state.setExists(false);
+            }
+        }
+        sendStates();
+        updateButtonLights();
+    }
+    
+    private void updateButtonLights() {
+        if (buttons == null) {
+            return;
+        }
+        for (int i = 0; i < buttons.length && i < states.size(); i++) {
+            final int index = firstIndex + i;
+            final boolean on;
+            if (!states.get(i).exists()) {
+                on = false;
+            } else if (buttonMuteLayer.isActive()) {
+                on = trackMirror.isMuted(index);
+            } else if (buttonSoloLayer.isActive()) {
+                on = trackMirror.isSoloed(index);
+            } else if (buttonArmLayer.isActive()) {
+                on = trackMirror.isArmed(index);
+            } else {
+                continue;
+            }
+            buttons[i].setLightState(on ? 0x7F : 0x00);
+        }
+    }
+    
     private void bindButtons(final RotoButton button, final Track track) {
         track.mute().markInterested();
         track.solo().markInterested();
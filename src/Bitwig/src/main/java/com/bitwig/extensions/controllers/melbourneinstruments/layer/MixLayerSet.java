@@ -34,12 +34,17 @@ public abstract class MixLayerSet implements ScrollViewSet {
     
     protected int numberOfTracks;
     protected int firstIndex;
+    private Runnable scrollSettledListener = () -> {};
+    // track list as last sent in a full TRACK DETAILS sequence
+    private int sentNumberOfTracks = -1;
+    private int sentFirstIndex = -1;
+    private int sentExistMask = -1;
     
     public MixLayerSet(final Layers layers, final MidiProcessor midiProcessor, final String name,
         final TrackBank trackBank, final EffectTrackSet effectTrackSet) {
         this.states = new ArrayList<>();
         this.trackBank = trackBank;
-        //trackBank.scrollPosition().addValueObserver(this::handleScrollPositionChange);
+        trackBank.scrollPosition().addValueObserver(this::handleScrollPositionChange);
         this.midiProcessor = midiProcessor;
         this.name = name;
         buttonMuteLayer = new Layer(layers, "MUTE_LAYER_%s".formatted(name));
@@ -51,6 +56,17 @@ public abstract class MixLayerSet implements ScrollViewSet {
         this.effectTrackSet = effectTrackSet;
     }
     
+    private void handleScrollPositionChange(final int position) {
+        if (scrollInPlace()) {
+            scrollSettledListener.run();
+        }
+    }
+    
+    @Override
+    public void setScrollSettledListener(final Runnable listener) {
+        this.scrollSettledListener = listener;
+    }
+    
     // Out of commission until we get unlimited tracks and follow again
     public boolean adjustTrackScroll(final int pos) {
         if (pos <= firstIndex || pos >= (firstIndex + 8)) {
@@ -105,16 +121,52 @@ public abstract class MixLayerSet implements ScrollViewSet {
     @Override
     public void sendStates() {
         effectTrackSet.sendStates();
-        midiProcessor.sendIndexCommand("04", numberOfTracks);
-        midiProcessor.sendIndexCommand("05", firstIndex);
+        midiProcessor.sendIndexCommand(0x04, numberOfTracks);
+        midiProcessor.sendIndexCommand(0x05, firstIndex);
         final List<TrackState> existingStates = states.stream().filter(TrackState::isExists).toList();
         for (int i = 0; i < existingStates.size(); i++) {
             final TrackState state = existingStates.get(i);
             if (state.exists()) {
-                midiProcessor.sendSysEx(state.toSysExUpdate(firstIndex + i));
+                state.sendUpdate(midiProcessor, firstIndex + i);
             }
         }
         midiProcessor.endTrackDetail();
+        sentNumberOfTracks = numberOfTracks;
+        sentFirstIndex = firstIndex;
+        sentExistMask = getExistMask();
+    }
+    
+    /**
+     * Only resends the tracks whose name, color or grouping changed. The full TRACK DETAILS sequence is only needed
+     * if the track count, the offset or the shown tracks changed, or if the hardware can't update single tracks.
+     */
+    @Override
+    public void sendChangedStates() {
+        if (!midiProcessor.supportsTrackSlotUpdates() || numberOfTracks != sentNumberOfTracks
+            || firstIndex != sentFirstIndex || getExistMask() != sentExistMask) {
+            sendStates();
+            return;
+        }
+        effectTrackSet.sendChangedSendStates();
+        int slot = 0;
+        for (final TrackState state : states) {
+            if (state.exists()) {
+                if (state.isDirty()) {
+                    state.sendSlotUpdate(midiProcessor, firstIndex + slot);
+                }
+                slot++;
+            }
+        }
+    }
+    
+    private int getExistMask() {
+        int mask = 0;
+        for (int i = 0; i < states.size(); i++) {
+            if (states.get(i).exists()) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
     }
     
     public void setTrackOffset(final int position) {
@@ -4,4 +4,16 @@ public interface ScrollViewSet {
     boolean scrollInPlace();
     
     void sendStates();
+    
+    /**
+     * Sends what changed since the states were last sent, by default everything.
+     */
+    default void sendChangedStates() {
+        sendStates();
+    }
+    
+    /**
+     * @param listener called when the bank lands on the position of the set, i.e. {@link #scrollInPlace()} became true
+     */
+    void setScrollSettledListener(Runnable listener);
 }
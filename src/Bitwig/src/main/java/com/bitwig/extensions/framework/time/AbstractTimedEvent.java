@@ -1,22 +1,39 @@
 package com.bitwig.extensions.framework.time;
 
 public abstract class AbstractTimedEvent implements TimedEvent {
-   protected final long startTime;
    protected boolean completed;
    protected final long delayTime;
 
+   TimerWheel wheel;
+   AbstractTimedEvent previous;
+   AbstractTimedEvent next;
+   long deadlineTick;
+
    public AbstractTimedEvent(final long delayTime) {
-      startTime = System.currentTimeMillis();
       completed = false;
       this.delayTime = delayTime;
    }
 
    public void cancel() {
       completed = true;
+      if (wheel != null) {
+         wheel.remove(this);
+      }
    }
 
    public boolean isCompleted() {
       return completed;
    }
 
+   public long getDelayTime() {
+      return delayTime;
+   }
+
+   /**
+    * Invoked by a {@link TimerWheel} once the deadline has been reached.
+    *
+    * @return time in ms until the event needs to be invoked again or -1 if the event is done
+    */
+   protected abstract long fire();
+
 }
@@ -4,7 +4,6 @@ import java.util.function.IntConsumer;
 
 public class TimeRepeatEvent extends AbstractTimedEvent {
    private final int repeatTime;
-   private long repeatTimer = -1;
    private int repeatCount = 0;
    private final IntConsumer action;
 
@@ -20,19 +19,9 @@ public class TimeRepeatEvent extends AbstractTimedEvent {
       this.action = repeat -> runAction.run();
    }
 
-
    @Override
-   public void process() {
-      if (completed) {
-         return;
-      }
-      final long passedTime = System.currentTimeMillis() - startTime;
-      if (repeatTimer == -1 && passedTime > delayTime) {
-         action.accept(++repeatCount);
-         repeatTimer = System.currentTimeMillis();
-      } else if (repeatTimer > 0 && (System.currentTimeMillis() - repeatTimer) >= repeatTime) {
-         action.accept(++repeatCount);
-         repeatTimer = System.currentTimeMillis();
-      }
+   protected long fire() {
+      action.accept(++repeatCount);
+      return repeatTime;
    }
 }
@@ -8,14 +8,10 @@ public class TimedDelayEvent extends AbstractTimedEvent {
         this.timedAction = timedAction;
     }
     
-    public void process() {
-        if (completed) {
-            return;
-        }
-        final long passedTime = System.currentTimeMillis() - startTime;
-        if (passedTime >= delayTime) {
-            timedAction.run();
-            completed = true;
-        }
+    @Override
+    protected long fire() {
+        timedAction.run();
+        completed = true;
+        return -1;
     }
 }
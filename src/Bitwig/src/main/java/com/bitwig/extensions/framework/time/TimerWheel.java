@@ -0,0 +1,190 @@
+package com.bitwig.extensions.framework.time;
+
+/**
+ * Hashed timing wheel for {@link AbstractTimedEvent}s. Each slot holds a doubly linked list of events, so scheduling
+ * and cancelling are O(1). Time advances in ticks of a fixed length, an event fires on the first tick at or after its
+ * deadline. The wheel only asks its {@link TickScheduler} for a wake-up while events are pending and skips ahead to
+ * the next occupied slot, so nothing runs when idle.
+ */
+public class TimerWheel {
+    public static final int DEFAULT_TICK_TIME = 5;
+    private static final int DEFAULT_SLOT_COUNT = 256;
+    private static final long NO_TICK = Long.MAX_VALUE;
+
+    /**
+     * Source of wake-ups, usually {@code ControllerHost::scheduleTask}.
+     */
+    @FunctionalInterface
+    public interface TickScheduler {
+        void scheduleTask(Runnable task, long delay);
+    }
+
+    private final TickScheduler scheduler;
+    private final AbstractTimedEvent[] slots;
+    private final int mask;
+    private final long tickNanos;
+    private final long origin = System.nanoTime();
+
+    private long currentTick;
+    private long scheduledTick = NO_TICK;
+    private int pendingCount;
+    private boolean ticking;
+
+    public TimerWheel(final TickScheduler scheduler) {
+        this(scheduler, DEFAULT_TICK_TIME, DEFAULT_SLOT_COUNT);
+    }
+
+    /**
+     * @param scheduler source of wake-ups
+     * @param tickTime  length of a tick in ms
+     * @param slotCount number of slots, needs to be a power of two
+     */
+    public TimerWheel(final TickScheduler scheduler, final int tickTime, final int slotCount) {
+        if (tickTime < 1 || slotCount < 1 || Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("Invalid wheel %d ms x %d slots".formatted(tickTime, slotCount));
+        }
+        this.scheduler = scheduler;
+        this.slots = new AbstractTimedEvent[slotCount];
+        this.mask = slotCount - 1;
+        this.tickNanos = tickTime * 1_000_000L;
+    }
+
+    /**
+     * Schedules the event to fire after its delay time. An event that is already scheduled is rescheduled.
+     */
+    public void schedule(final AbstractTimedEvent event) {
+        if (event.wheel != null) {
+            event.wheel.remove(event);
+        }
+        event.completed = false;
+        insert(event, toTick(System.nanoTime() + event.getDelayTime() * 1_000_000L));
+        planNextTick();
+    }
+
+    /**
+     * Runs the action once after the given delay.
+     *
+     * @return the scheduled event, can be used to cancel the action
+     */
+    public TimedEvent delay(final Runnable action, final long delayTime) {
+        final TimedDelayEvent event = new TimedDelayEvent(action, delayTime);
+        schedule(event);
+        return event;
+    }
+
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    void remove(final AbstractTimedEvent event) {
+        if (event.wheel != this) {
+            return;
+        }
+        if (event.previous != null) {
+            event.previous.next = event.next;
+        } else {
+            slots[(int) (event.deadlineTick & mask)] = event.next;
+        }
+        if (event.next != null) {
+            event.next.previous = event.previous;
+        }
+        event.previous = null;
+        event.next = null;
+        event.wheel = null;
+        pendingCount--;
+    }
+
+    private void insert(final AbstractTimedEvent event, final long deadlineTick) {
+        if (pendingCount == 0 && !ticking) {
+            currentTick = Math.max(currentTick, nowTick());
+        }
+        event.deadlineTick = Math.max(deadlineTick, currentTick + 1);
+        final int slot = (int) (event.deadlineTick & mask);
+        event.wheel = this;
+        event.previous = null;
+        event.next = slots[slot];
+        if (event.next != null) {
+            event.next.previous = event;
+        }
+        slots[slot] = event;
+        pendingCount++;
+    }
+
+    private long toTick(final long nanoTime) {
+        return ceilDiv(nanoTime - origin, tickNanos);
+    }
+
+    private long nowTick() {
+        return (System.nanoTime() - origin) / tickNanos;
+    }
+
+    private static long ceilDiv(final long value, final long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+
+    private void tick(final long plannedTick) {
+        if (ticking) {
+            return;
+        }
+        ticking = true;
+        try {
+            final long now = nowTick();
+            if (now - currentTick > slots.length) {
+                currentTick = now - slots.length;
+            }
+            while (currentTick < now && pendingCount > 0) {
+                currentTick++;
+                fireSlot((int) (currentTick & mask), now);
+            }
+            currentTick = Math.max(currentTick, now);
+        }
+        finally {
+            ticking = false;
+            if (plannedTick == scheduledTick) {
+                scheduledTick = NO_TICK;
+            }
+            planNextTick();
+        }
+    }
+
+    private void fireSlot(final int slot, final long now) {
+        AbstractTimedEvent event = nextDue(slots[slot], now);
+        while (event != null) {
+            remove(event);
+            final long repeatTime = event.fire();
+            if (repeatTime >= 0 && !event.completed && event.wheel == null) {
+                final long repeatTicks = Math.max(1, ceilDiv(repeatTime * 1_000_000L, tickNanos));
+                insert(event, Math.max(event.deadlineTick + repeatTicks, now + 1));
+            }
+            event = nextDue(slots[slot], now);
+        }
+    }
+
+    private static AbstractTimedEvent nextDue(final AbstractTimedEvent head, final long now) {
+        AbstractTimedEvent event = head;
+        while (event != null && event.deadlineTick > now) {
+            event = event.next;
+        }
+        return event;
+    }
+
+    private void planNextTick() {
+        if (ticking || pendingCount == 0) {
+            return;
+        }
+        long nextTick = currentTick + slots.length;
+        for (int i = 1; i <= slots.length; i++) {
+            if (slots[(int) ((currentTick + i) & mask)] != null) {
+                nextTick = currentTick + i;
+                break;
+            }
+        }
+        if (nextTick >= scheduledTick) {
+            return;
+        }
+        final long plannedTick = nextTick;
+        scheduledTick = plannedTick;
+        final long delay = ceilDiv(origin + plannedTick * tickNanos - System.nanoTime(), 1_000_000L);
+        scheduler.scheduleTask(() -> tick(plannedTick), Math.max(0, delay));
+    }
+}
@@ -47,13 +47,19 @@ public class BasicDoubleValue implements SettableDoubleValue {
     public void set(final double v) {
         if (v != this.value) {
             this.value = v;
-            changeListeners.forEach(callback -> callback.valueChanged(v));
+            notifyListeners();
         }
     }
     
     public void setForce(final double v) {
         this.value = v;
-        changeListeners.forEach(callback -> callback.valueChanged(value));
+        notifyListeners();
+    }
+    
+    private void notifyListeners() {
+        for (int i = 0; i < changeListeners.size(); i++) {
+            changeListeners.get(i).valueChanged(value);
+        }
     }
     
     @Override
@@ -0,0 +1,34 @@
+package com.bitwig.extensions.controllers.melbourneinstruments;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the bytes allocated by the current thread, as reported by the JVM.
+ */
+public final class AllocationMeter {
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private AllocationMeter() {
+    }
+
+    public static long allocatedBytes() {
+        return THREAD_BEAN.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Runs the action a number of times after warming it up.
+     *
+     * @return bytes allocated per run
+     */
+    public static double bytesPerRun(final int runs, final Runnable action) {
+        for (int i = 0; i < runs; i++) {
+            action.run();
+        }
+        final long start = allocatedBytes();
+        for (int i = 0; i < runs; i++) {
+            action.run();
+        }
+        return (double) (allocatedBytes() - start) / runs;
+    }
+}
@@ -0,0 +1,151 @@
+package com.bitwig.extensions.controllers.melbourneinstruments;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.bitwig.extension.callback.ShortMidiMessageReceivedCallback;
+import com.bitwig.extension.callback.SysexMidiDataReceivedCallback;
+
+/**
+ * Replays the inbound traffic of a {@link MidiJournal} dump into an extension running on a {@link TestMidiHost},
+ * either as fast as possible or with the recorded timing. Messages arrive through the registered MIDI callbacks and
+ * the simulated hardware surface, like the host delivers them, and every message is followed by a flush. The
+ * replay starts only once the extension has been initialized and its scheduled tasks are settled.
+ */
+public class JournalReplay {
+    private static final int MAGIC = 0x52434A31;
+    private static final long MS = 1_000_000L;
+
+    public enum Mode {
+        FAST,
+        REAL_TIME
+    }
+
+    public record Entry(long time, int type, byte[] data) {
+    }
+
+    public record Result(int messages, int routedToHardware, long elapsedTime, long totalHandlingTime,
+        long maxHandlingTime, int outFrames, long outBytes) {
+
+        @Override
+        public String toString() {
+            return "%d messages (%d to hardware controls) in %.1f ms, handling avg=%.1fus max=%.1fus, out frames=%d bytes=%d".formatted(
+                messages, routedToHardware, elapsedTime / 1e6, totalHandlingTime / (Math.max(1, messages) * 1000.0),
+                maxHandlingTime / 1000.0, outFrames, outBytes);
+        }
+    }
+
+    private final TestMidiHost testHost;
+    private final SimulatedHardware hardware;
+    private final Runnable flush;
+
+    public JournalReplay(final TestMidiHost testHost, final SimulatedHardware hardware, final Runnable flush) {
+        this.testHost = testHost;
+        this.hardware = hardware;
+        this.flush = flush;
+    }
+
+    /**
+     * @return the inbound entries of the dump
+     */
+    public static List<Entry> load(final Path file) throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a MIDI journal: " + file);
+            }
+            in.readInt();
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final long time = in.readLong();
+                final int type = in.readByte();
+                final byte[] data = new byte[in.readShort()];
+                in.readFully(data);
+                if (type == MidiJournal.IN_CC || type == MidiJournal.IN_SYSEX) {
+                    entries.add(new Entry(time, type, data));
+                }
+            }
+        }
+        return entries;
+    }
+
+    public Result replay(final List<Entry> entries, final Mode mode) {
+        final ShortMidiMessageReceivedCallback midiCallback = testHost.getMidiCallback();
+        final SysexMidiDataReceivedCallback sysExCallback = testHost.getSysExCallback();
+        final int framesAtStart = testHost.getSentSysEx().size() + testHost.getSentMidi().size();
+        final long bytesAtStart = sentBytes();
+        int routed = 0;
+        long totalHandlingTime = 0;
+        long maxHandlingTime = 0;
+        final long startTime = System.nanoTime();
+        final long firstTime = entries.isEmpty() ? 0 : entries.get(0).time();
+        long clock = 0;
+        for (final Entry entry : entries) {
+            final long offset = entry.time() - firstTime;
+            if (mode == Mode.REAL_TIME) {
+                waitUntil(startTime + offset);
+            }
+            // host tasks due before the message run first, in fast mode the host clock still follows the recording
+            testHost.advance(offset / MS - clock);
+            clock = offset / MS;
+
+            final byte[] data = entry.data();
+            final long start = System.nanoTime();
+            if (entry.type() == MidiJournal.IN_CC) {
+                final int status = data[0] & 0xFF;
+                if (status == 0xBF) {
+                    routed += hardware.dispatchCc(data[1], data[2]);
+                }
+                midiCallback.midiReceived(status, data[1], data[2]);
+            } else {
+                sysExCallback.sysexDataReceived(toHex(data));
+            }
+            final long handlingTime = System.nanoTime() - start;
+            totalHandlingTime += handlingTime;
+            maxHandlingTime = Math.max(maxHandlingTime, handlingTime);
+            flush.run();
+        }
+        return new Result(entries.size(), routed, System.nanoTime() - startTime, totalHandlingTime, maxHandlingTime,
+            testHost.getSentSysEx().size() + testHost.getSentMidi().size() - framesAtStart,
+            sentBytes() - bytesAtStart);
+    }
+
+    private long sentBytes() {
+        long bytes = testHost.getSentMidi().size() * 3L;
+        for (final byte[] frame : testHost.getSentSysEx()) {
+            bytes += frame.length;
+        }
+        return bytes;
+    }
+
+    private static void waitUntil(final long nanoTime) {
+        long remaining = nanoTime - System.nanoTime();
+        while (remaining > 0) {
+            if (remaining > 2 * MS) {
+                try {
+                    Thread.sleep((remaining - MS) / MS);
+                }
+                catch (final InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } else {
+                Thread.onSpinWait();
+            }
+            remaining = nanoTime - System.nanoTime();
+        }
+    }
+
+    private static String toHex(final byte[] data) {
+        final StringBuilder hex = new StringBuilder();
+        for (final byte value : data) {
+            hex.append("%02x".formatted(value & 0xFF));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,155 @@
+package com.bitwig.extensions.controllers.melbourneinstruments;
+
+import static com.bitwig.extensions.controllers.melbourneinstruments.TestMidiHost.hex;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import com.bitwig.extension.controller.api.Parameter;
+import com.bitwig.extension.controller.api.Transport;
+
+/**
+ * Records a short session with the journal, dumps it and replays the dump into the extension running on stubs of the
+ * controller API, so nothing reaches a real project.
+ */
+class JournalReplayTest {
+    private static final int TRANSPORT_PLAY = 0x1C;
+    private static final int TRANSPORT_RECORD = 0x1E;
+    private static final int KNOB_0 = 0xC;
+    private static final int TOUCH_0 = 0x34;
+
+    @TempDir
+    Path tempDir;
+
+    private final SimulatedHardware hardware = new SimulatedHardware();
+    private final TestMidiHost testHost = new TestMidiHost(hardware);
+    private JournalReplay replay;
+    private MidiJournal journal;
+    private long lastEntryTime;
+
+    @BeforeEach
+    void setUp() {
+        final RotoControlExtension extension =
+            new RotoControlExtension(new RotoControlExtensionDefinition(), testHost.getHost());
+        extension.init();
+        extension.flush();
+        testHost.advance(1000);
+        extension.flush();
+        replay = new JournalReplay(testHost, hardware, extension::flush);
+        journal = new MidiJournal();
+        journal.setEnabled(true);
+    }
+
+    private void waitFor(final long gapMs) {
+        final long due = lastEntryTime + gapMs * 1_000_000L;
+        while (System.nanoTime() < due) {
+            Thread.onSpinWait();
+        }
+        lastEntryTime = System.nanoTime();
+    }
+
+    private void recordCc(final long gapMs, final int ccNr, final int value) {
+        waitFor(gapMs);
+        journal.recordShort(MidiJournal.IN_CC, 0xBF, ccNr, value);
+    }
+
+    private void recordSysEx(final long gapMs, final String data) {
+        waitFor(gapMs);
+        final byte[] message = HexFormat.of().parseHex(data);
+        journal.recordSysEx(MidiJournal.IN_SYSEX, message, message.length);
+    }
+
+    /**
+     * Transport mode with play and record pressed, then mixer mode with the first knob touched and turned.
+     */
+    private List<JournalReplay.Entry> recordSession(final long gapMs) throws IOException {
+        lastEntryTime = System.nanoTime();
+        recordSysEx(0, hex(MidiProcessor.CMD_ID_GENERAL, 0xA));
+        recordCc(gapMs, TRANSPORT_PLAY, 127);
+        recordCc(gapMs, TRANSPORT_PLAY, 0);
+        recordCc(gapMs, TRANSPORT_RECORD, 127);
+        recordCc(gapMs, TRANSPORT_RECORD, 0);
+        recordSysEx(gapMs, hex(MidiProcessor.CMD_ID_MIXER, 0x1, 0, 0, 0, 0));
+        recordCc(gapMs, TOUCH_0, 127);
+        recordCc(gapMs, KNOB_0, 0x40);
+        recordCc(0, KNOB_0 + 0x20, 0);
+        recordCc(gapMs, TOUCH_0, 0);
+        // outbound traffic is in the dump as well, but is not replayed
+        journal.recordShort(MidiJournal.OUT_CC, 0xBF, KNOB_0, 0x40);
+
+        final Path file = tempDir.resolve("session.rcj");
+        assertEquals(11, journal.dump(file));
+        return JournalReplay.load(file);
+    }
+
+    private void verifySessionReachedStubs() {
+        final Transport transport = testHost.getHost().createTransport();
+        verify(transport.playAction()).invoke();
+        verify(transport.isArrangerRecordEnabled()).toggle();
+
+        final Parameter volume = testHost.getHost().createMainTrackBank(8, 1, 1).getItemAt(0).volume();
+        verify(volume, times(1)).touch(true);
+        verify(volume, atLeastOnce()).touch(false);
+        final ArgumentCaptor<Double> value = ArgumentCaptor.forClass(Double.class);
+        verify(volume.value(), atLeastOnce()).setImmediately(value.capture());
+        // the knob maps its 14 bit value with a full scale of 16382
+        assertEquals((0x40 << 7) / 16382.0, value.getValue(), 1e-9);
+    }
+
+    @Test
+    void fastReplayDispatchesAllInboundMessages() throws IOException {
+        final List<JournalReplay.Entry> entries = recordSession(1);
+        assertEquals(10, entries.size());
+
+        final JournalReplay.Result result = replay.replay(entries, JournalReplay.Mode.FAST);
+        System.out.println("fast replay: " + result);
+
+        assertEquals(10, result.messages());
+        // play and record press and release reach the button and its continuous knob, touch on and off the sensor
+        assertEquals(10, result.routedToHardware());
+        assertTrue(result.outFrames() > 0);
+        assertTrue(result.outBytes() > result.outFrames());
+        verifySessionReachedStubs();
+    }
+
+    @Test
+    void realTimeReplayKeepsRecordedTiming() throws IOException {
+        final List<JournalReplay.Entry> entries = recordSession(20);
+        final long recordedTime = entries.get(entries.size() - 1).time() - entries.get(0).time();
+
+        final JournalReplay.Result result = replay.replay(entries, JournalReplay.Mode.REAL_TIME);
+        System.out.println("real-time replay: " + result);
+
+        assertTrue(result.elapsedTime() >= recordedTime,
+            "replay took %d us, recording %d us".formatted(result.elapsedTime() / 1000, recordedTime / 1000));
+        assertEquals(10, result.routedToHardware());
+        verifySessionReachedStubs();
+    }
+
+    @Test
+    void dumpWithoutInboundTrafficReplaysNothing() throws IOException {
+        journal.recordShort(MidiJournal.OUT_CC, 0xBF, KNOB_0, 0x40);
+        final Path file = tempDir.resolve("outbound.rcj");
+        journal.dump(file);
+
+        final JournalReplay.Result result = replay.replay(JournalReplay.load(file), JournalReplay.Mode.FAST);
+        assertEquals(0, result.messages());
+        assertEquals(0, result.outFrames());
+        verify(testHost.getHost().createTransport().playAction(), times(0)).invoke();
+        verify(testHost.getHost().createMainTrackBank(8, 1, 1).getItemAt(0).volume().value(), times(0))
+            .setImmediately(anyDouble());
+    }
+}
@@ -0,0 +1,147 @@
+package com.bitwig.extensions.controllers.melbourneinstruments;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+
+import org.mockito.invocation.InvocationOnMock;
+
+import com.bitwig.extension.callback.BooleanValueChangedCallback;
+import com.bitwig.extension.callback.DoubleValueChangedCallback;
+import com.bitwig.extension.controller.api.AbsoluteHardwareKnob;
+import com.bitwig.extension.controller.api.HardwareAction;
+import com.bitwig.extension.controller.api.HardwareActionBindable;
+import com.bitwig.extension.controller.api.HardwareButton;
+
+/**
+ * Stub API that also plays the part of the host's hardware surface: CCs matched by the buttons, touch sensors and
+ * continuous buttons of the controller are routed to the actions bound in the active layers and to the observers of
+ * {@code isPressed()} and {@code value()}, the way Bitwig handles them before they reach the MIDI callback.
+ */
+public class SimulatedHardware extends StubApiAnswer {
+    private record Press(HardwareButton button, boolean pressed) {
+    }
+
+    private final Map<Integer, Object> ccActionMatchers = new HashMap<>();
+    private final Map<Integer, Object> ccValueMatchers = new HashMap<>();
+    private final Map<Object, HardwareAction> matchedActions = new HashMap<>();
+    private final Map<Object, AbsoluteHardwareKnob> matchedKnobs = new HashMap<>();
+    private final Map<Object, Press> actionPresses = new HashMap<>();
+    private final Map<Object, List<Object>> actionBindings = new HashMap<>();
+    private final Map<Object, Object> bindingTargets = new HashMap<>();
+    private final Map<Object, Object> actionTargets = new HashMap<>();
+    private final Map<Object, List<Object>> observers = new HashMap<>();
+    private final Map<Object, Object> values = new HashMap<>();
+
+    @Override
+    public Object answer(final InvocationOnMock invocation) throws Throwable {
+        final Object receiver = invocation.getMock();
+        final Object[] arguments = invocation.getArguments();
+        switch (invocation.getMethod().getName()) {
+            case "addValueObserver" -> {
+                if (arguments.length == 1) {
+                    observers.computeIfAbsent(receiver, key -> new ArrayList<>()).add(arguments[0]);
+                }
+                return null;
+            }
+            case "get", "getAsBoolean", "getAsDouble" -> {
+                if (values.containsKey(receiver)) {
+                    return values.get(receiver);
+                }
+            }
+            case "setActionMatcher" -> {
+                matchedActions.put(arguments[0], (HardwareAction) receiver);
+                return null;
+            }
+            case "setAdjustValueMatcher" -> {
+                matchedKnobs.put(arguments[0], (AbsoluteHardwareKnob) receiver);
+                return null;
+            }
+            case "addBinding", "setBinding" -> {
+                if (receiver instanceof HardwareAction) {
+                    final List<Object> bindings = actionBindings.computeIfAbsent(receiver, key -> new ArrayList<>());
+                    if (invocation.getMethod().getName().equals("setBinding")) {
+                        bindings.clear();
+                    }
+                    bindings.add(arguments[0]);
+                    final Object binding = super.answer(invocation);
+                    bindingTargets.put(binding, arguments[0]);
+                    return binding;
+                }
+            }
+            case "removeBinding" -> {
+                final Object target = bindingTargets.remove(receiver);
+                if (target != null) {
+                    actionBindings.values().forEach(bindings -> bindings.remove(target));
+                    return null;
+                }
+            }
+            default -> {
+            }
+        }
+        final Object result = super.answer(invocation);
+        switch (invocation.getMethod().getName()) {
+            case "createCCActionMatcher" -> {
+                if (arguments.length == 3) {
+                    ccActionMatchers.put(key(invocation.getArgument(1), invocation.getArgument(2)), result);
+                }
+            }
+            case "createAbsoluteCCValueMatcher" -> ccValueMatchers.put(invocation.getArgument(1), result);
+            case "pressedAction" -> actionPresses.put(result, new Press((HardwareButton) receiver, true));
+            case "releasedAction" -> actionPresses.put(result, new Press((HardwareButton) receiver, false));
+            case "createAction" -> actionTargets.put(result, arguments[0]);
+            default -> {
+            }
+        }
+        return result;
+    }
+
+    private static int key(final int ccNr, final int value) {
+        return ccNr << 8 | value;
+    }
+
+    /**
+     * Handles a CC the way the host surface would.
+     *
+     * @return number of hardware controls the CC was routed to
+     */
+    public int dispatchCc(final int ccNr, final int value) {
+        int routed = 0;
+        final HardwareAction action = matchedActions.get(ccActionMatchers.get(key(ccNr, value)));
+        if (action != null) {
+            routed++;
+            final Press press = actionPresses.get(action);
+            if (press != null) {
+                final Object isPressed = press.button().isPressed();
+                if (!Boolean.valueOf(press.pressed()).equals(values.put(isPressed, press.pressed()))) {
+                    for (final Object observer : observers.getOrDefault(isPressed, List.of())) {
+                        ((BooleanValueChangedCallback) observer).valueChanged(press.pressed());
+                    }
+                }
+            }
+            for (final Object bindable : List.copyOf(actionBindings.getOrDefault(action, List.of()))) {
+                final Object target = actionTargets.get(bindable);
+                if (target instanceof Runnable runnable) {
+                    runnable.run();
+                } else if (target instanceof DoubleConsumer consumer) {
+                    consumer.accept(value / 127.0);
+                } else {
+                    // an action of the API, such as the transport's play action
+                    ((HardwareActionBindable) bindable).invoke();
+                }
+            }
+        }
+        final AbsoluteHardwareKnob knob = matchedKnobs.get(ccValueMatchers.get(ccNr));
+        if (knob != null) {
+            routed++;
+            final Object knobValue = knob.value();
+            values.put(knobValue, value / 127.0);
+            for (final Object observer : observers.getOrDefault(knobValue, List.of())) {
+                ((DoubleValueChangedCallback) observer).valueChanged(value / 127.0);
+            }
+        }
+        return routed;
+    }
+}
@@ -0,0 +1,124 @@
+package com.bitwig.extensions.controllers.melbourneinstruments;
+
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Default answer that stands in for the whole controller API. Every call returning an API interface gets a stub of
+ * its own, the same one for the same receiver and arguments, so {@code bank.getItemAt(3)} is always the same track.
+ * Generic returns are resolved against the type the stub was created for, which Mockito's deep stubs get wrong for
+ * the nested banks. Banks report the size they were created with. Stubs of a stub created with
+ * {@code withSettings().stubOnly()} are stub only as well and don't record the calls made to them.
+ */
+public class StubApiAnswer implements Answer<Object> {
+    private record Key(Object receiver, Method method, List<Object> arguments) {
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof Key key && key.receiver == receiver && key.method.equals(method)
+                && key.arguments.equals(arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(receiver) * 31 + method.hashCode() * 17 + arguments.hashCode();
+        }
+    }
+
+    private final Map<Key, Object> stubs = new HashMap<>();
+    private final Map<Object, Integer> bankSizes = new HashMap<>();
+
+    @Override
+    public Object answer(final InvocationOnMock invocation) throws Throwable {
+        final Method method = invocation.getMethod();
+        if (method.getName().equals("getSizeOfBank") && method.getParameterCount() == 0) {
+            return bankSizes.getOrDefault(invocation.getMock(), 0);
+        }
+        final Class<?> type = resolveReturnType(invocation.getMock(), method);
+        if (type == String.class) {
+            return "";
+        }
+        if (type.isArray()) {
+            return Array.newInstance(type.getComponentType(), 0);
+        }
+        if (!type.isInterface() || !type.getPackageName().startsWith("com.bitwig.extension")) {
+            return RETURNS_DEFAULTS.answer(invocation);
+        }
+        final Key key = new Key(invocation.getMock(), method, Arrays.asList(invocation.getArguments()));
+        final Object existing = stubs.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        final Object stub = Mockito.mockingDetails(invocation.getMock()).getMockCreationSettings().isStubOnly()
+            ? mock(type, withSettings().stubOnly().defaultAnswer(this))
+            : mock(type, this);
+        stubs.put(key, stub);
+        if (type.getSimpleName().endsWith("Bank") && method.getName().startsWith("create")
+            && invocation.getArguments().length > 0 && invocation.getArgument(0) instanceof Integer size) {
+            bankSizes.put(stub, size);
+        }
+        return stub;
+    }
+
+    private static Class<?> resolveReturnType(final Object receiver, final Method method) {
+        final Map<TypeVariable<?>, Type> bindings = new HashMap<>();
+        collectBindings(Mockito.mockingDetails(receiver).getMockCreationSettings().getTypeToMock(), bindings);
+        return rawType(method.getGenericReturnType(), bindings);
+    }
+
+    private static void collectBindings(final Type type, final Map<TypeVariable<?>, Type> bindings) {
+        final Class<?> rawType;
+        if (type instanceof ParameterizedType parameterized) {
+            rawType = (Class<?>) parameterized.getRawType();
+            final TypeVariable<?>[] variables = rawType.getTypeParameters();
+            final Type[] arguments = parameterized.getActualTypeArguments();
+            for (int i = 0; i < variables.length; i++) {
+                bindings.putIfAbsent(variables[i], arguments[i]);
+            }
+        } else if (type instanceof Class<?> clazz) {
+            rawType = clazz;
+        } else {
+            return;
+        }
+        for (final Type superType : rawType.getGenericInterfaces()) {
+            collectBindings(superType, bindings);
+        }
+        if (rawType.getGenericSuperclass() != null) {
+            collectBindings(rawType.getGenericSuperclass(), bindings);
+        }
+    }
+
+    private static Class<?> rawType(final Type type, final Map<TypeVariable<?>, Type> bindings) {
+        if (type instanceof Class<?> clazz) {
+            return clazz;
+        }
+        if (type instanceof ParameterizedType parameterized) {
+            return (Class<?>) parameterized.getRawType();
+        }
+        if (type instanceof GenericArrayType arrayType) {
+            return rawType(arrayType.getGenericComponentType(), bindings).arrayType();
+        }
+        if (type instanceof WildcardType wildcard) {
+            return rawType(wildcard.getUpperBounds()[0], bindings);
+        }
+        final TypeVariable<?> variable = (TypeVariable<?>) type;
+        final Type bound = bindings.get(variable);
+        return rawType(bound != null ? bound : variable.getBounds()[0], bindings);
+    }
+}
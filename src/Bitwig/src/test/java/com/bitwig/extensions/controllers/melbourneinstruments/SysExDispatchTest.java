@@ -0,0 +1,203 @@
+package com.bitwig.extensions.controllers.melbourneinstruments;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.bitwig.extension.controller.api.ControllerHost;
+import com.bitwig.extensions.controllers.melbourneinstruments.device.ParameterSettings;
+
+/**
+ * Feeds frames as captured from the hardware through {@link SysExMessage} and the handler table of
+ * {@link MidiProcessor}.
+ */
+class SysExDispatchTest {
+    private final TestMidiHost testHost = new TestMidiHost();
+    private final MainLayerHandler mixState = mock(MainLayerHandler.class);
+    private MidiProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        processor = testHost.createInitializedProcessor(mixState);
+        clearInvocations(mixState);
+        testHost.getSentSysEx().clear();
+    }
+
+    @Test
+    void messageAccessors() {
+        final SysExMessage message = new SysExMessage();
+        assertTrue(message.parse("f00022030202010b0102030a0b0c0d0e0f10f7"));
+        assertEquals(0x02, message.getCommand());
+        assertEquals(0x01, message.getSubCommand());
+        assertEquals(11, message.getDataLength());
+        assertEquals(0x0B, message.value(0));
+        assertEquals(0x0B << 7 | 0x01, message.intValue(0));
+        assertEquals(((0x02L << 7 | 0x03) << 7 | 0x0A), message.longValue(2, 3));
+
+        assertTrue(message.parse("f0002203020a0e01020361626364656667f7"));
+        assertEquals("abcdefg", message.asciiValue(3, 7));
+    }
+
+    @Test
+    void rejectsMalformedFrames() {
+        assertTrue(SysExMessage.hasRotoHeader("F0002203020A06"));
+        assertFalse(SysExMessage.hasRotoHeader("f07e7f0601f7"));
+        assertFalse(SysExMessage.hasRotoHeader("f00022"));
+        final SysExMessage message = new SysExMessage();
+        assertFalse(message.parse("f00022030202f7"));
+        assertFalse(message.parse("f00022030102030af7"));
+        assertFalse(message.parse("f0002203020a0g01f7"));
+        assertFalse(message.parse("f0002203020a0601"));
+    }
+
+    @Test
+    void doesNotReadBeyondShortMessage() {
+        final SysExMessage message = new SysExMessage();
+        assertTrue(message.parse("f0002203020a0e01020331323334353637f7"));
+        assertTrue(message.parse("f0002203020a0601f7"));
+        assertEquals(1, message.getDataLength());
+        assertEquals(1, message.value(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> message.value(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> message.intValue(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> message.asciiValue(0, 7));
+    }
+
+    @Test
+    void onlyMalformedRotoFramesAreLogged() {
+        final TestMidiHost extensionHost = new TestMidiHost(new StubApiAnswer());
+        final RotoControlExtension extension =
+            new RotoControlExtension(new RotoControlExtensionDefinition(), extensionHost.getHost());
+        extension.init();
+        final ControllerHost host = extensionHost.getHost();
+        clearInvocations(host);
+
+        // SysEx of other devices on the same port
+        extensionHost.getSysExCallback().sysexDataReceived("f07e7f0601f7");
+        extensionHost.getSysExCallback().sysexDataReceived("f0002203030a0601f7");
+        extensionHost.getSysExCallback().sysexDataReceived("f000");
+        verify(host, never()).println(anyString());
+
+        extensionHost.getSysExCallback().sysexDataReceived("f0002203020a06");
+        verify(host).println(contains("Illegal Sysex Received"));
+        // update statistics are only printed on exit while the journal is recorded
+        extension.exit();
+        verify(host, never()).println(contains("Controller updates"));
+    }
+
+    @Test
+    void shortFrameIsNotDispatched() {
+        processor.handleSysEx("f0002203020a0601f7");
+        processor.handleSysEx("f0002203020c01000102f7");
+        processor.handleSysEx("f0002203020b0b000102f7");
+        verifyNoInteractions(mixState);
+    }
+
+    @Test
+    void unknownCommandsAreIgnored() {
+        processor.handleSysEx("f0002203020a1f01f7");
+        processor.handleSysEx("f0002203020d0101f7");
+        verifyNoInteractions(mixState);
+        assertTrue(testHost.getSentSysEx().isEmpty());
+    }
+
+    @Test
+    void generalCommands() {
+        processor.handleSysEx("f0002203020a02f7");
+        assertEquals("F0 00 22 03 02 0A 03 02 F7", TestMidiHost.toHex(testHost.getSentSysEx().get(0)));
+
+        processor.handleSysEx("f0002203020a060108f7");
+        verify(mixState).setTrackOffset(136);
+        processor.handleSysEx("f0002203020a090003f7");
+        verify(mixState).selectTrack(3);
+        processor.handleSysEx("f0002203020a0af7");
+        verify(mixState).toTransportMode();
+    }
+
+    @Test
+    void connectRequestsVersions() {
+        processor.handleSysEx("f0002203020a10010600f7");
+        assertTrue(processor.supportsTrackSlotUpdates());
+        testHost.getSentSysEx().clear();
+
+        processor.handleSysEx("f0002203020a0cf7");
+        assertFalse(processor.supportsTrackSlotUpdates());
+        assertEquals(2, testHost.getSentSysEx().size());
+        assertEquals("F0 00 22 03 02 0A 0D F7", TestMidiHost.toHex(testHost.getSentSysEx().get(0)));
+        assertEquals("F0 00 22 03 02 0A 0F F7", TestMidiHost.toHex(testHost.getSentSysEx().get(1)));
+
+        processor.handleSysEx("f0002203020a0e01020361626364656667f7");
+        processor.handleSysEx("f0002203020a100104f7");
+        assertFalse(processor.supportsTrackSlotUpdates());
+        processor.handleSysEx("f0002203020a100105f7");
+        assertTrue(processor.supportsTrackSlotUpdates());
+    }
+
+    @Test
+    void pluginCommands() {
+        processor.handleSysEx("f0002203020b0101f7");
+        verify(mixState).toPluginMode(1);
+        processor.handleSysEx("f0002203020b0402f7");
+        verify(mixState).navigatePluginBank(2);
+        processor.handleSysEx("f0002203020b0705f7");
+        verify(mixState).selectPlugin(5);
+        processor.handleSysEx("f0002203020b0901f7");
+        verify(mixState).setPluginLearnMode(true);
+        processor.handleSysEx("f0002203020b0c0300f7");
+        verify(mixState).activatePlugin(3, 0);
+        processor.handleSysEx("f0002203020b0d01f7");
+        verify(mixState).lockDevice(1);
+        processor.handleSysEx("f0002203020b1004f7");
+        verify(mixState).selectRemotePage(4);
+        processor.handleSysEx("f0002203020b110107f7");
+        verify(mixState).confirmLearned(1, 7);
+        processor.handleSysEx("f0002203020b12f7");
+        verify(mixState).toggleRemotePage();
+    }
+
+    @Test
+    void parameterRequest() {
+        processor.handleSysEx("f0002203020b0b0102112233445566030201f7");
+        final ArgumentCaptor<ParameterSettings> captor = ArgumentCaptor.forClass(ParameterSettings.class);
+        verify(mixState).activateParameter(captor.capture());
+        final ParameterSettings settings = captor.getValue();
+        assertEquals(1 << 7 | 2, settings.index());
+        long hash = 0;
+        for (final int value : new int[] {0x11, 0x22, 0x33, 0x44, 0x55, 0x66}) {
+            hash = hash << 7 | value;
+        }
+        assertEquals(hash, settings.hashValue());
+        assertEquals(3, settings.controlType());
+        assertEquals(2, settings.pageIndex());
+        assertTrue(settings.isMacro());
+    }
+
+    @Test
+    void mixerCommands() {
+        processor.handleSysEx("f0002203020c0101020301f7");
+        verify(mixState).setMixMode(1, 2, 3, 1);
+        processor.handleSysEx("f0002203020c0205f7");
+        verify(mixState).setTrackControl(5);
+        processor.handleSysEx("f0002203020c0501f7");
+        verify(mixState).setMasterControl(1);
+        processor.handleSysEx("f0002203020c060010f7");
+        verify(mixState).focusTrackToggle(16);
+        processor.handleSysEx("f0002203020c0706f7");
+        verify(mixState).sendTrackNameRequest(6);
+        verify(mixState, never()).activateParameter(any());
+        verify(mixState, never()).setTrackOffset(anyInt());
+    }
+}
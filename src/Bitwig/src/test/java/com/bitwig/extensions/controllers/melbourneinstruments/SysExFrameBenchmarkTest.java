@@ -0,0 +1,88 @@
+package com.bitwig.extensions.controllers.melbourneinstruments;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares building TRACK DETAILS frames with {@link SysExFrame} against the hex string formatting used before.
+ */
+class SysExFrameBenchmarkTest {
+    private static final String[] NAMES = {"Drums", "Bass Synth Long Name", "Pads", "Überlagerung", "", "Vox 2"};
+    private static final int FRAMES = 200_000;
+
+    private final MidiProcessor processor = new MidiProcessor(new TestMidiHost().getHost());
+
+    private static String legacyName(final String name) {
+        final StringBuilder cmd = new StringBuilder();
+        final String text = StringUtil.toAsciiDisplay(name, 12);
+        for (int i = 0; i < 13; i++) {
+            if (i < text.length()) {
+                cmd.append("%02X ".formatted((int) text.charAt(i)));
+            } else {
+                cmd.append("00 ");
+            }
+        }
+        return cmd.toString();
+    }
+
+    private static String legacyFrame(final int index, final String midiName, final int color, final boolean group) {
+        return "F0 00 22 03 02 0A 07 %02X %02X %s%02X %02X F7".formatted((index >> 7) & 0x7F, index & 0x7F, midiName,
+            color, group ? 1 : 0);
+    }
+
+    private byte[] frame(final int index, final String name, final int color, final boolean group) {
+        final SysExFrame frame = processor.frame(MidiProcessor.CMD_ID_GENERAL, 0x07);
+        final byte[] data = frame.value14(index).name(name).value(color).value(group).complete().toBytes();
+        // not initialized, the frame only goes back to the pool
+        processor.sendSysEx(frame, TransmitQueue.NO_KEY);
+        return data;
+    }
+
+    @Test
+    void framesMatchHexStrings() {
+        for (int i = 0; i < NAMES.length; i++) {
+            final int index = i * 100;
+            assertEquals(legacyFrame(index, legacyName(NAMES[i]), i + 3, i % 2 == 0),
+                TestMidiHost.toHex(frame(index, NAMES[i], i + 3, i % 2 == 0)));
+        }
+    }
+
+    @Test
+    void benchmarkBytesAndGarbagePerFrame() {
+        // the name strings were cached per track, only the frame itself was formatted per message
+        final String[] legacyNames = new String[NAMES.length];
+        for (int i = 0; i < NAMES.length; i++) {
+            legacyNames[i] = legacyName(NAMES[i]);
+        }
+        final int[] counter = new int[1];
+        final long[] size = new long[1];
+        final Runnable legacy = () -> {
+            final int i = counter[0]++ % NAMES.length;
+            size[0] += legacyFrame(i, legacyNames[i], 20, false).length();
+        };
+        final Runnable current = () -> {
+            final int i = counter[0]++ % NAMES.length;
+            size[0] += frame(i, NAMES[i], 20, false).length;
+        };
+        final double legacyGarbage = AllocationMeter.bytesPerRun(FRAMES, legacy);
+        final double currentGarbage = AllocationMeter.bytesPerRun(FRAMES, current);
+        final double legacyRate = bytesPerSecond(legacy, size);
+        final double currentRate = bytesPerSecond(current, size);
+        System.out.printf("hex string: %.1f MB/s of frame text, %.0f bytes garbage/frame%n", legacyRate / 1e6,
+            legacyGarbage);
+        System.out.printf("SysExFrame: %.1f MB/s of frame data, %.0f bytes garbage/frame%n", currentRate / 1e6,
+            currentGarbage);
+        assertTrue(currentGarbage * 4 < legacyGarbage);
+    }
+
+    private static double bytesPerSecond(final Runnable action, final long[] size) {
+        size[0] = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            action.run();
+        }
+        return size[0] * 1e9 / (System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,166 @@
+package com.bitwig.extensions.controllers.melbourneinstruments;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.mockito.ArgumentCaptor;
+
+import com.bitwig.extension.callback.ShortMidiMessageReceivedCallback;
+import com.bitwig.extension.callback.SysexMidiDataReceivedCallback;
+import com.bitwig.extension.controller.api.ControllerHost;
+import com.bitwig.extension.controller.api.MidiIn;
+import com.bitwig.extension.controller.api.MidiOut;
+
+/**
+ * Host with mocked MIDI ports for tests. Outgoing MIDI is recorded, scheduled tasks run on a virtual clock that only
+ * advances through {@link #advance(long)}.
+ */
+public final class TestMidiHost {
+    private record Task(long time, long order, Runnable action) {
+    }
+
+    private final ControllerHost host;
+    private final MidiIn midiIn;
+    private final MidiOut midiOut = mock(MidiOut.class);
+    private final List<byte[]> sentSysEx = new ArrayList<>();
+    private final List<int[]> sentMidi = new ArrayList<>();
+    private final PriorityQueue<Task> tasks =
+        new PriorityQueue<>((t1, t2) -> t1.time != t2.time ? Long.compare(t1.time, t2.time)
+            : Long.compare(t1.order, t2.order));
+    private long now;
+    private long taskOrder;
+
+    public TestMidiHost() {
+        this(mock(ControllerHost.class), mock(MidiIn.class, RETURNS_DEEP_STUBS));
+    }
+
+    /**
+     * Creates a host on which everything except the MIDI ports and the scheduler is answered by the given stub API,
+     * so the whole extension can be initialized against it.
+     */
+    public TestMidiHost(final StubApiAnswer api) {
+        this(mock(ControllerHost.class, api), mock(MidiIn.class, api));
+    }
+
+    private TestMidiHost(final ControllerHost host, final MidiIn midiIn) {
+        this.host = host;
+        this.midiIn = midiIn;
+        when(host.getMidiInPort(0)).thenReturn(midiIn);
+        when(host.getMidiOutPort(0)).thenReturn(midiOut);
+        doAnswer(invocation -> {
+            // worker threads hand their results back through the scheduler as well
+            synchronized (tasks) {
+                tasks.add(new Task(now + invocation.<Long>getArgument(1), taskOrder++, invocation.getArgument(0)));
+            }
+            return null;
+        }).when(host).scheduleTask(any(Runnable.class), any(Long.class));
+        doAnswer(invocation -> sentSysEx.add(invocation.getArgument(0))).when(midiOut).sendSysex(any(byte[].class));
+        doAnswer(invocation -> sentMidi.add(
+            new int[] {invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)})).when(midiOut)
+            .sendMidi(anyInt(), anyInt(), anyInt());
+    }
+
+    public ControllerHost getHost() {
+        return host;
+    }
+
+    /**
+     * @return the callback registered for incoming short MIDI messages
+     */
+    public ShortMidiMessageReceivedCallback getMidiCallback() {
+        final ArgumentCaptor<ShortMidiMessageReceivedCallback> captor =
+            ArgumentCaptor.forClass(ShortMidiMessageReceivedCallback.class);
+        verify(midiIn, atLeastOnce()).setMidiCallback(captor.capture());
+        return captor.getValue();
+    }
+
+    /**
+     * @return the callback registered for incoming SysEx messages
+     */
+    public SysexMidiDataReceivedCallback getSysExCallback() {
+        final ArgumentCaptor<SysexMidiDataReceivedCallback> captor =
+            ArgumentCaptor.forClass(SysexMidiDataReceivedCallback.class);
+        verify(midiIn, atLeastOnce()).setSysexCallback(captor.capture());
+        return captor.getValue();
+    }
+
+    public List<byte[]> getSentSysEx() {
+        return sentSysEx;
+    }
+
+    public List<int[]> getSentMidi() {
+        return sentMidi;
+    }
+
+    /**
+     * @return current time of the virtual clock in ms
+     */
+    public long now() {
+        return now;
+    }
+
+    /**
+     * Runs all tasks due within the given time, including tasks they schedule.
+     */
+    public void advance(final long timeMs) {
+        final long end = now + timeMs;
+        Task task;
+        while ((task = nextTask(end)) != null) {
+            now = task.time;
+            task.action.run();
+        }
+        now = end;
+    }
+
+    private Task nextTask(final long end) {
+        synchronized (tasks) {
+            return !tasks.isEmpty() && tasks.peek().time <= end ? tasks.poll() : null;
+        }
+    }
+
+    public int getPendingTasks() {
+        synchronized (tasks) {
+            return tasks.size();
+        }
+    }
+
+    /**
+     * Creates a processor and puts it into the state after the hardware reported its first mode, so outgoing
+     * messages are sent.
+     */
+    public MidiProcessor createInitializedProcessor(final MainLayerHandler mixState) {
+        final MidiProcessor processor = new MidiProcessor(host);
+        processor.setMixState(mixState);
+        processor.handleSysEx(hex(0x0A, 0x0A));
+        return processor;
+    }
+
+    /**
+     * @return the ROTO-CONTROL message with the given command, sub command and data as the host delivers it
+     */
+    public static String hex(final int command, final int subCommand, final int... data) {
+        final StringBuilder sb = new StringBuilder("f000220302%02x%02x".formatted(command, subCommand));
+        for (final int value : data) {
+            sb.append("%02x".formatted(value));
+        }
+        return sb.append("f7").toString();
+    }
+
+    public static String toHex(final byte[] data) {
+        final StringBuilder sb = new StringBuilder();
+        for (final byte value : data) {
+            sb.append("%02X ".formatted(value & 0xFF));
+        }
+        return sb.toString().trim();
+    }
+}
@@ -0,0 +1,111 @@
+package com.bitwig.extensions.controllers.melbourneinstruments;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.bitwig.extension.controller.api.MidiOut;
+
+class TransmitQueueTest {
+    private final List<byte[]> sent = new ArrayList<>();
+    private final TransmitQueue queue = new TransmitQueue(new MidiOut() {
+        @Override
+        public void sendSysex(final byte[] data) {
+            sent.add(data);
+        }
+    }, new MidiJournal());
+
+    private static byte[] frame(final int value) {
+        return SysExFrame.of(MidiProcessor.CMD_ID_MIXER, 0x01, value);
+    }
+
+    private void drainAll() {
+        queue.setBytesPerMs(1_000_000);
+        while (queue.drain()) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @Test
+    void unsentFrameIsReplacedInPlace() {
+        final byte[] replaced = frame(1);
+        final byte[] other = frame(2);
+        final byte[] update = frame(3);
+        queue.sendSysEx(replaced, 1);
+        queue.sendSysEx(other, 2);
+        queue.sendSysEx(update, 1);
+        assertEquals(2, queue.getDepth(TransmitQueue.Lane.BULK));
+        drainAll();
+
+        assertEquals(List.of(update, other), sent);
+        assertEquals(1, queue.getCoalesced());
+    }
+
+    @Test
+    void frameWithoutKeyEndsCoalescing() {
+        final byte[] first = frame(1);
+        final byte[] sequence = frame(2);
+        final byte[] second = frame(3);
+        queue.sendSysEx(first, 1);
+        queue.sendSysEx(sequence);
+        queue.sendSysEx(second, 1);
+        drainAll();
+
+        assertEquals(List.of(first, sequence, second), sent);
+        assertEquals(0, queue.getCoalesced());
+    }
+
+    @Test
+    void sentFrameIsNotReplaced() {
+        final byte[] first = frame(1);
+        final byte[] second = frame(2);
+        queue.sendSysEx(first, 1);
+        drainAll();
+        queue.sendSysEx(second, 1);
+        drainAll();
+
+        assertEquals(List.of(first, second), sent);
+    }
+
+    @Test
+    void coalescingSurvivesGrowingTheLane() {
+        final int frames = 200;
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < frames; i++) {
+                queue.sendSysEx(frame(i & 0x7F), i);
+            }
+            final byte[] update = frame(0x7F);
+            queue.sendSysEx(update, 5);
+            queue.sendSysEx(update, frames - 1);
+            drainAll();
+
+            assertEquals(frames, sent.size());
+            assertSame(update, sent.get(5));
+            assertSame(update, sent.get(frames - 1));
+            sent.clear();
+        }
+    }
+
+    @Test
+    void queueingAndSendingDoesNotAllocate() {
+        final byte[] data = frame(1);
+        final int[] key = new int[1];
+        queue.setBytesPerMs(1_000_000);
+        final double bytes = AllocationMeter.bytesPerRun(100_000, () -> {
+            final int slot = key[0]++ & 0x3F;
+            queue.sendSysEx(data, slot);
+            queue.sendSysEx(data, slot);
+            if (slot == 0x3F) {
+                sent.clear();
+                while (queue.drain()) {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+        assertEquals(0, bytes, 1);
+    }
+}
@@ -0,0 +1,109 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.control;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.bitwig.extension.callback.ShortMidiMessageReceivedCallback;
+import com.bitwig.extension.controller.api.HardwareSurface;
+import com.bitwig.extensions.controllers.melbourneinstruments.AllocationMeter;
+import com.bitwig.extensions.controllers.melbourneinstruments.MidiProcessor;
+import com.bitwig.extensions.controllers.melbourneinstruments.TestMidiHost;
+
+/**
+ * Incoming knob positions, from the MIDI callback of the processor to the knob value.
+ */
+class RotoKnobInputTest {
+    private static final int STATUS = 0xBF;
+
+    private final TestMidiHost testHost = new TestMidiHost();
+    private final List<Double> values = new ArrayList<>();
+    private MidiProcessor processor;
+    private RotoKnob knob;
+    private ShortMidiMessageReceivedCallback midiIn;
+
+    @BeforeEach
+    void setUp() {
+        processor = new MidiProcessor(testHost.getHost());
+        knob = new RotoKnob(0, mock(HardwareSurface.class, RETURNS_DEEP_STUBS), processor);
+        knob.getKnobValue().addValueObserver(values::add);
+        midiIn = testHost.getMidiCallback();
+    }
+
+    private static double position(final int high, final int low) {
+        return Math.min(1, (high << 7 | low) / 16382.0);
+    }
+
+    private void send(final int high, final int low) {
+        send(knob, high, low);
+    }
+
+    private void send(final RotoKnob target, final int high, final int low) {
+        midiIn.midiReceived(STATUS, target.getMidiBase(), high);
+        midiIn.midiReceived(STATUS, target.getMidiBase() + 0x20, low);
+    }
+
+    @Test
+    void pairIsAppliedOnce() {
+        send(0x40, 0x10);
+        assertEquals(List.of(position(0x40, 0x10)), values);
+    }
+
+    @Test
+    void lowByteAloneIsFineUpdate() {
+        send(0x40, 0x10);
+        midiIn.midiReceived(STATUS, knob.getMidiBase() + 0x20, 0x11);
+        assertEquals(List.of(position(0x40, 0x10), position(0x40, 0x11)), values);
+    }
+
+    @Test
+    void supersededHighByteIsApplied() {
+        send(0x40, 0x10);
+        midiIn.midiReceived(STATUS, knob.getMidiBase(), 0x41);
+        midiIn.midiReceived(STATUS, knob.getMidiBase(), 0x42);
+        assertEquals(List.of(position(0x40, 0x10), position(0x41, 0x10)), values);
+    }
+
+    @Test
+    void finalHighByteWithoutLowByteIsApplied() throws InterruptedException {
+        send(0x40, 0x10);
+        midiIn.midiReceived(STATUS, knob.getMidiBase(), 0x41);
+        testHost.advance(5);
+        assertEquals(1, values.size());
+        // the timer wheel works with real time, the host clock only decides when the wheel is asked to tick
+        Thread.sleep(30);
+        testHost.advance(30);
+        assertEquals(List.of(position(0x40, 0x10), position(0x41, 0x10)), values);
+        midiIn.midiReceived(STATUS, knob.getMidiBase() + 0x20, 0x11);
+        assertEquals(position(0x41, 0x11), values.get(values.size() - 1));
+    }
+
+    @Test
+    void completedPairIsNotAppliedAgainByTimer() throws InterruptedException {
+        send(0x40, 0x10);
+        Thread.sleep(30);
+        testHost.advance(30);
+        assertEquals(1, values.size());
+    }
+
+    @Test
+    void inboundPathDoesNotAllocate() {
+        final RotoKnob sweptKnob = new RotoKnob(1, mock(HardwareSurface.class, RETURNS_DEEP_STUBS), processor);
+        final double[] sum = new double[1];
+        final int[] step = new int[1];
+        sweptKnob.getKnobValue().addValueObserver(value -> sum[0] += value);
+        final double bytesPerPair = AllocationMeter.bytesPerRun(100_000, () -> {
+            final int value = step[0]++ & 0x3FFF;
+            send(sweptKnob, value >> 7, value & 0x7F);
+        });
+        System.out.printf("knob MSB/LSB pair: %.3f bytes allocated%n", bytesPerPair);
+        assertTrue(bytesPerPair < 1, "allocated %.3f bytes per pair".formatted(bytesPerPair));
+    }
+}
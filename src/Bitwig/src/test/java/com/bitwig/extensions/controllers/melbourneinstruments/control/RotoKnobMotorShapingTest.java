@@ -0,0 +1,149 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.control;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.bitwig.extension.controller.api.HardwareSurface;
+import com.bitwig.extensions.controllers.melbourneinstruments.MidiProcessor;
+import com.bitwig.extensions.controllers.melbourneinstruments.TestMidiHost;
+
+/**
+ * Plays automation curves into a knob and checks the motor positions that reach the hardware against the deadband
+ * and the rate limit.
+ */
+class RotoKnobMotorShapingTest {
+    private static final long MS = 1_000_000L;
+    private static final int MAX_VALUE = 16383;
+
+    private final TestMidiHost testHost = new TestMidiHost();
+    private MidiProcessor processor;
+    private RotoKnob knob;
+    private int consumedMessages;
+
+    @BeforeEach
+    void setUp() {
+        processor = new MidiProcessor(testHost.getHost());
+        knob = new RotoKnob(0, mock(HardwareSurface.class, RETURNS_DEEP_STUBS), processor);
+        knob.setActive(true);
+    }
+
+    private void automate(final int value) {
+        knob.updateBytes(value & 0x7F, value >> 7);
+        knob.updatePosition(false);
+        processor.flush();
+    }
+
+    /**
+     * @return positions that reached the hardware since the last call
+     */
+    private List<Integer> sentPositions() {
+        final List<int[]> messages = testHost.getSentMidi();
+        final List<Integer> positions = new ArrayList<>();
+        for (int i = consumedMessages; i + 1 < messages.size(); i += 2) {
+            assertEquals(knob.getMidiBase(), messages.get(i)[1]);
+            assertEquals(knob.getMidiBase() + 0x20, messages.get(i + 1)[1]);
+            positions.add(messages.get(i)[2] << 7 | messages.get(i + 1)[2]);
+        }
+        consumedMessages = messages.size();
+        return positions;
+    }
+
+    private void settle() throws InterruptedException {
+        // the timer wheel works with real time, the host clock only decides when the wheel is asked to tick
+        Thread.sleep(100);
+        testHost.advance(100);
+        processor.flush();
+    }
+
+    private static void waitUntil(final long nanoTime) {
+        while (System.nanoTime() < nanoTime) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @Test
+    void changesWithinDeadbandAreHeldUntilSettled() throws InterruptedException {
+        knob.updateBytes(0, 0x40);
+        knob.updatePosition(true);
+        processor.flush();
+        assertEquals(List.of(0x40 << 7), sentPositions());
+
+        for (int step = 1; step < RotoKnob.DEFAULT_DEADBAND; step++) {
+            automate((0x40 << 7) + step);
+        }
+        assertEquals(List.of(), sentPositions());
+
+        settle();
+        assertEquals(List.of((0x40 << 7) + RotoKnob.DEFAULT_DEADBAND - 1), sentPositions());
+    }
+
+    @Test
+    void forcedUpdateBypassesShaping() {
+        automate(1000);
+        sentPositions();
+        knob.updateBytes(1, 0);
+        knob.updatePosition(true);
+        processor.flush();
+        knob.updateBytes(2, 0);
+        knob.updatePosition(true);
+        processor.flush();
+        assertEquals(List.of(1, 2), sentPositions());
+    }
+
+    @Test
+    void automationSweepIsRateLimited() throws InterruptedException {
+        final int steps = 400;
+        final long stepTime = 2 * MS;
+        final long start = System.nanoTime();
+        int maxLag = 0;
+        int lastSent = -1;
+        final List<Integer> sent = new ArrayList<>();
+        for (int step = 0; step <= steps; step++) {
+            waitUntil(start + step * stepTime);
+            // slow in, slow out sweep over the full range
+            final int value = (int) Math.round(MAX_VALUE * (1 - Math.cos(Math.PI * step / steps)) / 2);
+            automate(value);
+            final List<Integer> positions = sentPositions();
+            if (!positions.isEmpty()) {
+                lastSent = positions.get(positions.size() - 1);
+                sent.addAll(positions);
+            }
+            if (lastSent >= 0) {
+                maxLag = Math.max(maxLag, Math.abs(value - lastSent));
+            }
+        }
+        final double duration = (System.nanoTime() - start) / 1e9;
+        settle();
+        sent.addAll(sentPositions());
+
+        final int maxPositions = (int) Math.ceil(duration * RotoKnob.DEFAULT_MAX_UPDATE_RATE) + 2;
+        System.out.printf("automation sweep: %d steps in %.0f ms, %d positions sent (limit %d), max lag %d/%d%n",
+            steps + 1, duration * 1000, sent.size(), maxPositions, maxLag, MAX_VALUE);
+        assertTrue(sent.size() <= maxPositions, "%d positions sent".formatted(sent.size()));
+        assertEquals(MAX_VALUE, sent.get(sent.size() - 1));
+        for (int i = 1; i < sent.size() - 1; i++) {
+            assertTrue(Math.abs(sent.get(i) - sent.get(i - 1)) >= RotoKnob.DEFAULT_DEADBAND,
+                "position %d within deadband of its predecessor".formatted(i));
+        }
+    }
+
+    @Test
+    void slowDriftIsSentOncePastDeadband() {
+        final long start = System.nanoTime();
+        for (int step = 0; step <= 40; step++) {
+            waitUntil(start + step * 25 * MS);
+            automate(4000 + step);
+        }
+        final List<Integer> sent = sentPositions();
+        // one step every 25 ms is below the rate limit, so only the deadband holds positions back
+        assertEquals(List.of(4000, 4008, 4016, 4024, 4032, 4040), sent);
+    }
+}
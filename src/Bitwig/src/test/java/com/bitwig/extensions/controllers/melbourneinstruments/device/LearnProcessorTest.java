@@ -0,0 +1,170 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.device;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.bitwig.extension.controller.api.CursorDevice;
+import com.bitwig.extensions.controllers.melbourneinstruments.MainLayerHandler;
+import com.bitwig.extensions.controllers.melbourneinstruments.TestMidiHost;
+import com.bitwig.extensions.controllers.melbourneinstruments.device.StepProfileStore.StepProfile;
+
+/**
+ * Learns parameters of a simulated device that reports the value and display value of every probe right away, the
+ * update interval runs on the virtual clock of the test host.
+ */
+class LearnProcessorTest {
+    private static final int PARAMETERS = 16;
+    private static final int STEPS = 4;
+
+    @TempDir
+    Path tempDir;
+
+    private final TestMidiHost testHost = new TestMidiHost();
+    private final CursorDevice cursorDevice = mock(CursorDevice.class);
+    private StepProfileStore profileStore;
+    private DeviceParameterSet parameterSet;
+    private LearnProcessor learnProcessor;
+    private int maxProbing;
+
+    @BeforeEach
+    void setUp() {
+        final String[] ids = new String[PARAMETERS];
+        for (int i = 0; i < PARAMETERS; i++) {
+            ids[i] = "CONTENTS/PID%x".formatted(0x100 + i);
+        }
+        parameterSet =
+            new DeviceParameterSet("Synth", false, new ParameterIndexStore(tempDir.resolve("index"), message -> {
+            }));
+        parameterSet.beginRegistration(ids);
+        parameterSet.publish(parameterSet.buildTable(ids, false));
+        createProcessor("steps");
+        doAnswer(invocation -> {
+            final String pid = DeviceParameterSet.getLastSegment(invocation.getArgument(0));
+            final double position = invocation.getArgument(1);
+            if (learnProcessor.isProbing(pid)) {
+                maxProbing = Math.max(maxProbing, countProbing());
+                learnProcessor.captureValue(parameterSet, parameterSet.getParameter(pid), position, 0);
+                learnProcessor.captureDisplayValue(parameterSet, pid, stepName(position));
+            }
+            return null;
+        }).when(cursorDevice).setDirectParameterValueNormalized(anyString(), anyDouble(), anyDouble());
+    }
+
+    private StepProfileStore createStore(final String directory) {
+        return new StepProfileStore(tempDir.resolve(directory), Runnable::run, Runnable::run, message -> {
+        });
+    }
+
+    private void createProcessor(final String storeDirectory) {
+        profileStore = createStore(storeDirectory);
+        learnProcessor = new LearnProcessor(testHost.createInitializedProcessor(mock(MainLayerHandler.class)),
+            cursorDevice, profileStore);
+    }
+
+    private int countProbing() {
+        int probing = 0;
+        for (int i = 0; i < PARAMETERS; i++) {
+            if (learnProcessor.isProbing("PID%x".formatted(0x100 + i))) {
+                probing++;
+            }
+        }
+        return probing;
+    }
+
+    private static String stepName(final double position) {
+        return "Step %d".formatted(Math.min(STEPS - 1, (int) (position * STEPS)) + 1);
+    }
+
+    /**
+     * Reports a value change of the parameter the way the plugin mode handler does in learn mode.
+     */
+    private void touch(final String pid, final double value) {
+        parameterSet.setValue(parameterSet.indexOf(pid), value);
+        learnProcessor.captureValue(parameterSet, parameterSet.getParameter(pid), value, 0);
+    }
+
+    private void learnAll() {
+        while (learnProcessor.isLearning()) {
+            testHost.advance(LearnProcessor.UPDATE_INTERVAL);
+        }
+    }
+
+    /**
+     * Touches all parameters at once and learns them with an empty store.
+     *
+     * @return the time it took on the virtual clock
+     */
+    private long learnAllParameters(final int maxActiveJobs, final String storeDirectory) {
+        createProcessor(storeDirectory);
+        learnProcessor.setMaxActiveJobs(maxActiveJobs);
+        parameterSet.clearLearned();
+        maxProbing = 0;
+        final long start = testHost.now();
+        for (int i = 0; i < PARAMETERS; i++) {
+            touch("PID%x".formatted(0x100 + i), 0.5);
+        }
+        learnAll();
+        assertEquals(PARAMETERS, learnProcessor.getLearnedCount());
+        return testHost.now() - start;
+    }
+
+    @Test
+    void activeJobsAreLimited() {
+        final long parallel = learnAllParameters(LearnProcessor.MAX_ACTIVE_JOBS, "parallel");
+        assertEquals(LearnProcessor.MAX_ACTIVE_JOBS, maxProbing);
+        final long serial = learnAllParameters(1, "serial");
+        assertEquals(1, maxProbing);
+
+        // every job takes the same number of update intervals, so the jobs are done in a quarter of the time
+        assertEquals(serial, parallel * LearnProcessor.MAX_ACTIVE_JOBS, LearnProcessor.UPDATE_INTERVAL * 4);
+    }
+
+    @Test
+    void matchingStoredProfileIsNotProbed() {
+        final StepProfile profile = new StepProfile(STEPS, false, List.of("Step 1", "Step 2", "Step 3", "Step 4"));
+        profileStore.put(parameterSet, "PID100", profile);
+
+        touch("PID100", 0.3);
+        learnProcessor.captureDisplayValue(parameterSet, "PID100", "Step 2");
+
+        assertFalse(learnProcessor.isLearning());
+        assertEquals(1, learnProcessor.getLearnedCount());
+        verify(cursorDevice, never()).setDirectParameterValueNormalized(anyString(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    void storedProfileNotShowingTheDisplayValueIsLearnedAgain() {
+        // steps of a previous plugin version
+        profileStore.put(parameterSet, "PID100", new StepProfile(3, false, List.of("Saw", "Sine", "Square")));
+
+        touch("PID100", 0.3);
+        assertFalse(learnProcessor.isLearning());
+        clearInvocations(cursorDevice);
+        learnProcessor.captureDisplayValue(parameterSet, "PID100", "Step 2");
+        assertTrue(learnProcessor.isProbing("PID100"));
+        learnAll();
+
+        assertEquals(2, learnProcessor.getLearnedCount());
+        final StepProfile learned = createStore("steps").get(parameterSet, "PID100");
+        assertEquals(STEPS, learned.steps());
+        assertEquals(List.of("Step 1", "Step 2", "Step 3", "Step 4"), learned.stepNames());
+        // the parameter is put back where it was before probing
+        verify(cursorDevice).setDirectParameterValueNormalized(parameterSet.getParameter("PID100").getFullId(), 0.3,
+            1.0);
+    }
+}
@@ -0,0 +1,46 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.device;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LongIntHashMapTest {
+
+    @Test
+    void behavesLikeAHashMapUnderRandomUpdates() {
+        final LongIntHashMap map = new LongIntHashMap(64);
+        final Map<Long, Integer> expected = new HashMap<>();
+        final Random random = new Random(3);
+        for (int i = 0; i < 100_000; i++) {
+            // few distinct keys, so removals move back the entries of long probe sequences
+            final long key = random.nextInt(96) * 0x10000L;
+            if (random.nextBoolean() && expected.size() < 64) {
+                map.put(key, i);
+                expected.put(key, i);
+            } else {
+                assertEquals(expected.getOrDefault(key, LongIntHashMap.NO_VALUE), map.remove(key));
+                expected.remove(key);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int key = 0; key < 96; key++) {
+            assertEquals(expected.getOrDefault(key * 0x10000L, LongIntHashMap.NO_VALUE), map.get(key * 0x10000L));
+        }
+    }
+
+    @Test
+    void clearRemovesAllEntries() {
+        final LongIntHashMap map = new LongIntHashMap(8);
+        map.put(1, 10);
+        map.put(2, 20);
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(LongIntHashMap.NO_VALUE, map.get(1));
+        map.put(2, 30);
+        assertEquals(30, map.get(2));
+    }
+}
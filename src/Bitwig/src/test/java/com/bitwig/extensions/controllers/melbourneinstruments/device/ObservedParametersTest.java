@@ -0,0 +1,117 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.device;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.bitwig.extension.controller.api.DirectParameterValueDisplayObserver;
+
+/**
+ * Assigns pages of parameters the way the plugin mode handler does, one control per message with a flush after each,
+ * and records when the observer gets the new IDs on a virtual clock.
+ */
+class ObservedParametersTest {
+    private static final int CONTROLS = 16;
+    private static final long MESSAGE_INTERVAL = 1;
+    // delay of the full re-observation scheduled on every assignment before changes were applied on flush
+    private static final long SCHEDULED_DELAY = 200;
+
+    private record Update(long time, String[] ids) {
+    }
+
+    private final List<Update> updates = new ArrayList<>();
+    private ObservedParameters observedParameters;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        final DirectParameterValueDisplayObserver observer = mock(DirectParameterValueDisplayObserver.class);
+        doAnswer(invocation -> updates.add(new Update(now, invocation.getArgument(0)))).when(observer)
+            .setObservedParameterIds(any());
+        observedParameters = new ObservedParameters(observer);
+    }
+
+    private static String id(final int page, final int control) {
+        return "PID%x".formatted(page * CONTROLS + control);
+    }
+
+    private void observe(final String id) {
+        observedParameters.add("CONTENTS/ROOT_GENERIC_MODULE/%s".formatted(id));
+        observedParameters.add("CONTENTS/%s".formatted(id));
+    }
+
+    private void unobserve(final String id) {
+        observedParameters.remove("CONTENTS/ROOT_GENERIC_MODULE/%s".formatted(id));
+        observedParameters.remove("CONTENTS/%s".formatted(id));
+    }
+
+    /**
+     * Replaces the parameters of the previous page one control at a time, flushing after each message.
+     */
+    private void switchPage(final int previousPage, final int page) {
+        for (int control = 0; control < CONTROLS; control++) {
+            if (previousPage >= 0) {
+                unobserve(id(previousPage, control));
+            }
+            observe(id(page, control));
+            observedParameters.apply();
+            now += MESSAGE_INTERVAL;
+        }
+    }
+
+    @Test
+    void pageSwitchIsObservedOnTheNextFlush() {
+        switchPage(-1, 0);
+        now += 500;
+        updates.clear();
+
+        final long start = now;
+        switchPage(0, 1);
+        final long firstLatency = updates.get(0).time() - start;
+        final long lastLatency = updates.get(updates.size() - 1).time() - start;
+        assertEquals(0, firstLatency);
+        assertEquals((CONTROLS - 1) * MESSAGE_INTERVAL, lastLatency);
+        assertTrue(lastLatency < SCHEDULED_DELAY);
+        assertEquals(CONTROLS, updates.size());
+        final String[] observed = updates.get(updates.size() - 1).ids();
+        assertEquals(2 * CONTROLS, observed.length);
+        for (int control = 0; control < CONTROLS; control++) {
+            assertTrue(observedParameters.isObserved("CONTENTS/%s".formatted(id(1, control))));
+            assertFalse(observedParameters.isObserved("CONTENTS/%s".formatted(id(0, control))));
+        }
+    }
+
+    @Test
+    void reassigningTheSamePageSkipsTheObserver() {
+        switchPage(-1, 0);
+        final long sent = observedParameters.getUpdates();
+        updates.clear();
+
+        switchPage(0, 0);
+        assertEquals(List.of(), updates);
+        assertEquals(sent, observedParameters.getUpdates());
+        assertEquals(CONTROLS, observedParameters.getSkippedUpdates());
+    }
+
+    @Test
+    void changesWithinOneFlushAreSentOnce() {
+        observe(id(0, 0));
+        observe(id(0, 1));
+        unobserve(id(0, 0));
+        assertTrue(observedParameters.apply());
+        assertFalse(observedParameters.apply());
+
+        assertEquals(1, updates.size());
+        assertArrayEquals(new String[] {"CONTENTS/ROOT_GENERIC_MODULE/PID1", "CONTENTS/PID1"}, updates.get(0).ids());
+    }
+}
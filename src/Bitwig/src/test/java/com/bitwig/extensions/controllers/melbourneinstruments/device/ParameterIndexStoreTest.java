@@ -0,0 +1,157 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.device;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.bitwig.extensions.controllers.melbourneinstruments.StringUtil;
+
+class ParameterIndexStoreTest {
+    private static final String PLUGIN = "Synthetic 5000";
+    private static final int PARAMETERS = 5000;
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> errors = new ArrayList<>();
+
+    private static String[] syntheticIds(final int count) {
+        final String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = "CONTENTS/PID%x".formatted(0x10000 + i * 7);
+        }
+        return ids;
+    }
+
+    private static long[] hashes(final String[] ids) {
+        final long[] hashes = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            hashes[i] = RotoParameter.toHashKey(StringUtil.getPluginHash(ids[i], ParameterIndexStore.HASH_SIZE));
+        }
+        return hashes;
+    }
+
+    private static Path indexFile(final Path directory, final byte[] deviceHash) {
+        final StringBuilder fileName = new StringBuilder();
+        for (final byte value : deviceHash) {
+            fileName.append("%02x".formatted(value));
+        }
+        return directory.resolve(fileName.append(".idx").toString());
+    }
+
+    private static List<Path> list(final Path directory) throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+
+    @Test
+    void indexIsOnlyUsedForSameNameAndParameters() {
+        final ParameterIndexStore store = new ParameterIndexStore(tempDir, errors::add);
+        final String[] ids = syntheticIds(100);
+        final long[] hashes = hashes(ids);
+        final byte[] deviceHash = StringUtil.getPluginHash(PLUGIN, 8);
+        final long fingerprint = ParameterIndexStore.fingerprint(ids);
+        store.save(PLUGIN, deviceHash, fingerprint, hashes);
+
+        assertArrayEquals(hashes, store.load(PLUGIN, deviceHash, fingerprint, ids.length));
+        assertNull(store.load("Other", deviceHash, fingerprint, ids.length));
+        assertNull(store.load(PLUGIN, deviceHash, fingerprint + 1, ids.length));
+        assertNull(store.load(PLUGIN, deviceHash, fingerprint, ids.length - 1));
+        assertNull(store.load(PLUGIN, StringUtil.getPluginHash("Other", 8), fingerprint, ids.length));
+        assertEquals(List.of(), errors);
+    }
+
+    @Test
+    void loadedIndexCanBeReplaced() {
+        final ParameterIndexStore store = new ParameterIndexStore(tempDir, errors::add);
+        final String[] ids = syntheticIds(10);
+        final byte[] deviceHash = StringUtil.getPluginHash(PLUGIN, 8);
+        final long fingerprint = ParameterIndexStore.fingerprint(ids);
+        final long[] hashes = hashes(ids);
+        store.save(PLUGIN, deviceHash, fingerprint, hashes);
+        assertNotNull(store.load(PLUGIN, deviceHash, fingerprint, ids.length));
+
+        // the file must not be held open by the load, otherwise the move of the new index fails on Windows
+        final long[] changed = Arrays.copyOf(hashes, hashes.length);
+        changed[3] = 0x123456L;
+        store.save(PLUGIN, deviceHash, fingerprint, changed);
+        assertArrayEquals(changed, store.load(PLUGIN, deviceHash, fingerprint, ids.length));
+    }
+
+    @Test
+    void failedSaveLeavesNoTempFile() throws IOException {
+        final ParameterIndexStore store = new ParameterIndexStore(tempDir, errors::add);
+        final byte[] deviceHash = StringUtil.getPluginHash(PLUGIN, 8);
+        // a non-empty directory in place of the index file makes the move fail
+        final Path blocker = Files.createDirectories(indexFile(tempDir, deviceHash));
+        Files.createFile(blocker.resolve("keep"));
+
+        store.save(PLUGIN, deviceHash, 1, new long[] {1, 2, 3});
+        assertEquals(List.of(blocker), list(tempDir));
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).contains("not written"), errors.get(0));
+    }
+
+    @Test
+    void truncatedIndexIsIgnored() throws IOException {
+        final ParameterIndexStore store = new ParameterIndexStore(tempDir, errors::add);
+        final String[] ids = syntheticIds(10);
+        final byte[] deviceHash = StringUtil.getPluginHash(PLUGIN, 8);
+        final long fingerprint = ParameterIndexStore.fingerprint(ids);
+        store.save(PLUGIN, deviceHash, fingerprint, hashes(ids));
+        final Path file = indexFile(tempDir, deviceHash);
+        final byte[] data = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(data, data.length - 1));
+
+        assertNull(store.load(PLUGIN, deviceHash, fingerprint, ids.length));
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).contains("not readable"), errors.get(0));
+    }
+
+    /**
+     * Registers the IDs of a focused plugin the way the plugin mode handler does.
+     */
+    private static ParameterTable focus(final ParameterIndexStore store, final String[] ids) {
+        final DeviceParameterSet set = new DeviceParameterSet(PLUGIN, true, store);
+        assertTrue(set.beginRegistration(ids));
+        final ParameterTable table = set.buildTable(ids, true);
+        set.publish(table);
+        return table;
+    }
+
+    @Test
+    void warmIndexSkipsHashing() {
+        final ParameterIndexStore store = new ParameterIndexStore(tempDir, errors::add);
+        final String[] ids = syntheticIds(PARAMETERS);
+        final long[] expected = hashes(ids);
+        assertEquals(PARAMETERS - 1, focus(store, ids).indexOfHash(expected[PARAMETERS - 1]));
+        final byte[] deviceHash = StringUtil.getPluginHash(PLUGIN, 8);
+        final long fingerprint = ParameterIndexStore.fingerprint(ids);
+        assertArrayEquals(expected, store.load(PLUGIN, deviceHash, fingerprint, PARAMETERS));
+
+        // stored values no ID hashes to are only found if the table takes the hashes from the index
+        final long[] marked = new long[PARAMETERS];
+        for (int i = 0; i < PARAMETERS; i++) {
+            marked[i] = i + 1;
+        }
+        store.save(PLUGIN, deviceHash, fingerprint, marked);
+        final ParameterTable table = focus(store, ids);
+        assertEquals(PARAMETERS - 1, table.indexOfHash(PARAMETERS));
+        assertEquals(LongIntHashMap.NO_VALUE, table.indexOfHash(expected[PARAMETERS - 1]));
+        assertEquals(List.of(), errors);
+    }
+}
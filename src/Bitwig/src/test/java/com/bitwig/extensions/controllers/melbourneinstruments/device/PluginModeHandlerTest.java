@@ -0,0 +1,210 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.device;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import com.bitwig.extension.callback.DirectParameterDisplayedValueChangedCallback;
+import com.bitwig.extension.callback.DirectParameterIdChangedCallback;
+import com.bitwig.extension.callback.DirectParameterNormalizedValueChangedCallback;
+import com.bitwig.extension.callback.StringValueChangedCallback;
+import com.bitwig.extension.controller.api.ControllerHost;
+import com.bitwig.extension.controller.api.PinnableCursorDevice;
+import com.bitwig.extensions.controllers.melbourneinstruments.AllocationMeter;
+import com.bitwig.extensions.controllers.melbourneinstruments.MainLayerHandler;
+import com.bitwig.extensions.controllers.melbourneinstruments.RotoViewControl;
+import com.bitwig.extensions.controllers.melbourneinstruments.StubApiAnswer;
+import com.bitwig.extensions.controllers.melbourneinstruments.TestMidiHost;
+
+/**
+ * Runs the plugin mode handler against stubs of the controller API and feeds it the direct parameter reports of the
+ * cursor device. The hash worker runs its tasks right away and the tasks handed back to the controller thread run on
+ * the virtual clock of the test host.
+ */
+class PluginModeHandlerTest {
+    private static final String DEVICE = "Synthetic Synth";
+    private static final int PARAMETERS = 2000;
+
+    @TempDir
+    Path tempDir;
+
+    private final TestMidiHost testHost = new TestMidiHost(new StubApiAnswer());
+    private final MainLayerHandler mainHandler = mock(MainLayerHandler.class);
+    private final List<RotoControlParameter> knobs = new ArrayList<>();
+    private String userHome;
+    private PluginModeHandler handler;
+    private PinnableCursorDevice cursorDevice;
+    private String[] ids;
+
+    @BeforeEach
+    void setUp() {
+        // keeps the parameter index of the test out of the real user directory
+        userHome = System.getProperty("user.home");
+        System.setProperty("user.home", tempDir.toString());
+        final ControllerHost host = testHost.getHost();
+        final RotoViewControl viewControl = new RotoViewControl(host, host.createTransport());
+        final ExecutorService hashWorker = mock(ExecutorService.class);
+        doAnswer(invocation -> {
+            invocation.getArgument(0, Runnable.class).run();
+            return null;
+        }).when(hashWorker).execute(any());
+        handler = new PluginModeHandler(mainHandler, testHost.createInitializedProcessor(mock(MainLayerHandler.class)),
+            viewControl, hashWorker);
+        cursorDevice = viewControl.getCursorDevice();
+        for (int i = 0; i < 8; i++) {
+            knobs.add(new RotoControlParameter(i, cursorDevice));
+        }
+        when(mainHandler.getParameter(anyInt(), anyInt())).thenAnswer(
+            invocation -> knobs.get(invocation.getArgument(0, Integer.class)));
+        ids = new String[PARAMETERS];
+        for (int i = 0; i < PARAMETERS; i++) {
+            ids[i] = "CONTENTS/PID%x".formatted(0x400 + i);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        handler.shutdown();
+        System.setProperty("user.home", userHome);
+    }
+
+    /**
+     * Focuses the device and publishes the parameter table built by the hash worker.
+     */
+    private DeviceParameterSet focusDevice() {
+        renameCursorDevice(DEVICE);
+
+        final ArgumentCaptor<DirectParameterIdChangedCallback> idObserver =
+            ArgumentCaptor.forClass(DirectParameterIdChangedCallback.class);
+        verify(cursorDevice).addDirectParameterIdObserver(idObserver.capture());
+        idObserver.getValue().directParameterIdChanged(ids);
+
+        final DeviceParameterSet parameterSet =
+            handler.getParameterSetCache().get(DEVICE, name -> fail("device not focused"));
+        testHost.advance(0);
+        assertFalse(parameterSet.isRegistrationPending(), "parameter table not published");
+        return parameterSet;
+    }
+
+    private void renameCursorDevice(final String name) {
+        final ArgumentCaptor<StringValueChangedCallback> nameObserver =
+            ArgumentCaptor.forClass(StringValueChangedCallback.class);
+        verify(cursorDevice.name(), atLeastOnce()).addValueObserver(nameObserver.capture());
+        nameObserver.getAllValues().forEach(observer -> observer.valueChanged(name));
+    }
+
+    private DirectParameterDisplayedValueChangedCallback displayObserver() {
+        final ArgumentCaptor<DirectParameterDisplayedValueChangedCallback> captor =
+            ArgumentCaptor.forClass(DirectParameterDisplayedValueChangedCallback.class);
+        verify(cursorDevice).addDirectParameterValueDisplayObserver(anyInt(), captor.capture());
+        return captor.getValue();
+    }
+
+    /**
+     * Requests the parameters with the given indices on the first knobs, the way the hardware requests a page.
+     */
+    private void assignPage(final DeviceParameterSet parameterSet, final int... indices) {
+        for (int knob = 0; knob < indices.length; knob++) {
+            final long hash = parameterSet.getParameter(indices[knob]).getHashKey();
+            handler.activateParameter(new ParameterSettings(indices[knob], hash, 0, knob, false));
+        }
+        testHost.advance(1000);
+    }
+
+    private DirectParameterNormalizedValueChangedCallback valueObserver() {
+        final ArgumentCaptor<DirectParameterNormalizedValueChangedCallback> captor =
+            ArgumentCaptor.forClass(DirectParameterNormalizedValueChangedCallback.class);
+        verify(cursorDevice).addDirectParameterNormalizedValueObserver(captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    void valueReportsAreRoutedToTheParameterSet() {
+        final DeviceParameterSet parameterSet = focusDevice();
+        final DirectParameterNormalizedValueChangedCallback observer = valueObserver();
+
+        observer.directParameterNormalizedValueChanged(ids[17], 0.25);
+        observer.directParameterNormalizedValueChanged(ids[PARAMETERS - 1], 0.75);
+        // reports for IDs of another device are ignored
+        observer.directParameterNormalizedValueChanged("CONTENTS/PIDffff", 0.5);
+
+        assertEquals(0.25, parameterSet.getValue(parameterSet.indexOf("PID%x".formatted(0x400 + 17))));
+        assertEquals(0.75, parameterSet.getValue(parameterSet.indexOf("PID%x".formatted(0x400 + PARAMETERS - 1))));
+    }
+
+    @Test
+    void routeLookupDoesNotAllocate() {
+        focusDevice();
+        final DirectParameterNormalizedValueChangedCallback observer = valueObserver();
+        final DirectParameterDisplayedValueChangedCallback displayObserver = displayObserver();
+
+        final int[] next = new int[1];
+        final double valueBytes = AllocationMeter.bytesPerRun(10 * PARAMETERS, () -> {
+            final int index = next[0]++ % PARAMETERS;
+            observer.directParameterNormalizedValueChanged(ids[index], (index & 0xFF) / 255.0);
+        });
+        final double displayBytes = AllocationMeter.bytesPerRun(10 * PARAMETERS,
+            () -> displayObserver.directParameterDisplayedValueChanged(ids[next[0]++ % PARAMETERS], "1.0 dB"));
+        assertTrue(valueBytes < 1, "value report allocates %.1f bytes".formatted(valueBytes));
+        assertTrue(displayBytes < 1, "display report allocates %.1f bytes".formatted(displayBytes));
+    }
+
+    @Test
+    void shorterPageUnbindsTheRemainingControls() {
+        final DeviceParameterSet parameterSet = focusDevice();
+        final DirectParameterDisplayedValueChangedCallback displayObserver = displayObserver();
+        assignPage(parameterSet, 0, 1, 2, 3);
+        assignPage(parameterSet, 10, 11);
+
+        displayObserver.directParameterDisplayedValueChanged(ids[10], "10 %");
+        displayObserver.directParameterDisplayedValueChanged(ids[2], "2 %");
+        valueObserver().directParameterNormalizedValueChanged(ids[3], 0.75);
+
+        assertEquals("10 %", knobs.get(0).getDisplayValue().get());
+        assertEquals("", knobs.get(2).getDisplayValue().get());
+        assertEquals(0.0, knobs.get(3).getValue().get());
+    }
+
+    @Test
+    void otherDeviceIsNotRoutedToTheControls() {
+        final DeviceParameterSet parameterSet = focusDevice();
+        final DirectParameterDisplayedValueChangedCallback displayObserver = displayObserver();
+        assignPage(parameterSet, 0, 1, 2, 3);
+
+        // plugins of the same format share their parameter IDs
+        renameCursorDevice("Other Synth");
+        for (int i = 0; i < 4; i++) {
+            displayObserver.directParameterDisplayedValueChanged(ids[i], "%d %%".formatted(i));
+        }
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals("", knobs.get(i).getDisplayValue().get());
+        }
+    }
+
+    @Test
+    void learnModeWithoutFocusedDevice() {
+        handler.setPluginLearnMode(true);
+        handler.confirmLearned(0, 0);
+        handler.setPluginLearnMode(false);
+    }
+}
@@ -0,0 +1,116 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.device;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.function.DoubleFunction;
+import java.util.function.DoubleUnaryOperator;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the detector against simulated parameters that report a value and optionally a display value for each probe.
+ */
+class StepDetectorTest {
+    private static final int[] STEPS = {2, 3, 12, 24};
+
+    private static StepDetector detect(final DoubleUnaryOperator reportedValue,
+        final DoubleFunction<String> displayValue) {
+        final StepDetector detector = new StepDetector();
+        detector.init("PID1");
+        double position;
+        while ((position = detector.nextProbe()) != StepDetector.NO_PROBE) {
+            detector.setValue(reportedValue.applyAsDouble(position));
+            if (displayValue != null) {
+                detector.setValueString(displayValue.apply(position));
+            }
+            detector.completeProbe();
+        }
+        assertTrue(detector.isComplete());
+        return detector;
+    }
+
+    private static int stepOf(final double position, final int steps) {
+        return Math.min(steps - 1, (int) (position * steps));
+    }
+
+    private static String stepName(final double position, final int steps) {
+        return "Step %d".formatted(stepOf(position, steps) + 1);
+    }
+
+    private static double snap(final double position, final int steps) {
+        return stepOf(position, steps) / (steps - 1.0);
+    }
+
+    private static void assertSteps(final StepDetector detector, final int steps) {
+        assertFalse(detector.isContinuous(), "%d steps detected as continuous".formatted(steps));
+        assertEquals(steps, detector.getNrOfSteps());
+        final List<Double> boundaries = detector.getBoundaries();
+        assertEquals(steps - 1, boundaries.size());
+        for (int i = 0; i < boundaries.size(); i++) {
+            assertEquals((i + 1.0) / steps, boundaries.get(i), 1.0 / 128);
+        }
+    }
+
+    @Test
+    void continuousParameter() {
+        final StepDetector detector = detect(position -> position, position -> "%.2f %%".formatted(position * 100));
+        assertTrue(detector.isContinuous());
+        // every interval has been split until more than MAX_STEPS values were shown
+        assertTrue(detector.getDistinctValues() > StepDetector.MAX_STEPS);
+        assertEquals(detector.getProbeCount(), detector.getDistinctValues());
+    }
+
+    @Test
+    void continuousParameterWithoutDisplayValues() {
+        assertTrue(detect(position -> position, null).isContinuous());
+    }
+
+    @Test
+    void steppedParameterKeepingTheProbedValue() {
+        for (final int steps : STEPS) {
+            // the value stays where it was set to, only the display value is stepped
+            final StepDetector detector = detect(position -> position, position -> stepName(position, steps));
+            assertSteps(detector, steps);
+            assertEquals(steps, detector.getDistinctValues());
+        }
+    }
+
+    @Test
+    void initResetsTheDistinctValues() {
+        final StepDetector detector = detect(position -> position, position -> stepName(position, 12));
+        detector.init("PID2");
+        detector.nextProbe();
+        detector.setValue(0.0);
+        detector.setValueString("Off");
+        detector.completeProbe();
+        assertEquals(1, detector.getDistinctValues());
+    }
+
+    @Test
+    void steppedParameterSnappingToSteps() {
+        for (final int steps : STEPS) {
+            final StepDetector detector =
+                detect(position -> snap(position, steps), position -> stepName(position, steps));
+            assertSteps(detector, steps);
+            assertEquals("Step 1", detector.getStepNames().get(0));
+            assertEquals("Step %d".formatted(steps), detector.getStepNames().get(steps - 1));
+        }
+    }
+
+    @Test
+    void steppedParameterWithoutDisplayValues() {
+        for (final int steps : STEPS) {
+            assertSteps(detect(position -> snap(position, steps), null), steps);
+        }
+    }
+
+    @Test
+    void moreThanMaxStepsIsContinuous() {
+        final int steps = StepDetector.MAX_STEPS + 1;
+        assertTrue(detect(position -> position, position -> stepName(position, steps)).isContinuous());
+        assertTrue(detect(position -> snap(position, steps), position -> stepName(position, steps)).isContinuous());
+    }
+}
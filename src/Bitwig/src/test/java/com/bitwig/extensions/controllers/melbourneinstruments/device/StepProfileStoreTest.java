@@ -0,0 +1,139 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.device;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.bitwig.extensions.controllers.melbourneinstruments.device.StepProfileStore.StepProfile;
+
+class StepProfileStoreTest {
+    private static final StepProfile PROFILE = new StepProfile(3, false, List.of("Sine", "Saw", "Square"));
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> errors = new ArrayList<>();
+
+    private DeviceParameterSet createParameterSet(final String name, final int count) {
+        final String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = "CONTENTS/PID%x".formatted(0x100 + i);
+        }
+        final DeviceParameterSet parameterSet =
+            new DeviceParameterSet(name, false, new ParameterIndexStore(tempDir.resolve("index"), message -> {
+            }));
+        parameterSet.beginRegistration(ids);
+        parameterSet.publish(parameterSet.buildTable(ids, false));
+        return parameterSet;
+    }
+
+    /**
+     * @return a store that reads and writes right away
+     */
+    private StepProfileStore createStore(final Path directory) {
+        return new StepProfileStore(directory, Runnable::run, Runnable::run, errors::add);
+    }
+
+    private static List<Path> list(final Path directory) throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+
+    @Test
+    void profilesSurviveARestart() {
+        final Path directory = tempDir.resolve("steps");
+        createStore(directory).put(createParameterSet("Synth", 10), "PID101", PROFILE);
+
+        final StepProfileStore store = createStore(directory);
+        assertEquals(PROFILE, store.get(createParameterSet("Synth", 10), "PID101"));
+        assertNull(store.get(createParameterSet("Synth", 10), "PID102"));
+    }
+
+    @Test
+    void changedParametersDiscardProfiles() {
+        final Path directory = tempDir.resolve("steps");
+        createStore(directory).put(createParameterSet("Synth", 10), "PID101", PROFILE);
+
+        assertNull(createStore(directory).get(createParameterSet("Synth", 11), "PID101"));
+    }
+
+    @Test
+    void removedProfilesAreGoneAfterARestart() {
+        final Path directory = tempDir.resolve("steps");
+        final StepProfileStore store = createStore(directory);
+        store.put(createParameterSet("Synth", 10), "PID101", PROFILE);
+        store.remove(createParameterSet("Synth", 10), "PID101");
+
+        assertNull(createStore(directory).get(createParameterSet("Synth", 10), "PID101"));
+    }
+
+    @Test
+    void filesAreOnlyAccessedOnTheWorker() {
+        final Path directory = tempDir.resolve("steps");
+        createStore(directory).put(createParameterSet("Synth", 10), "PID101", PROFILE);
+        final Queue<Runnable> workerTasks = new ArrayDeque<>();
+        final StepProfileStore store = new StepProfileStore(directory, workerTasks::add, Runnable::run, errors::add);
+        final DeviceParameterSet parameterSet = createParameterSet("Synth", 10);
+
+        store.prefetch(parameterSet);
+        assertNull(store.get(parameterSet, "PID101"), "profiles available before they have been loaded");
+        assertEquals(1, workerTasks.size());
+        workerTasks.poll().run();
+        assertEquals(PROFILE, store.get(parameterSet, "PID101"));
+        assertEquals(List.of(), List.copyOf(workerTasks));
+    }
+
+    @Test
+    void changesDuringAWriteAreWrittenTogether() {
+        final Path directory = tempDir.resolve("steps");
+        final Queue<Runnable> workerTasks = new ArrayDeque<>();
+        final StepProfileStore store = new StepProfileStore(directory, workerTasks::add, Runnable::run, errors::add);
+        final DeviceParameterSet parameterSet = createParameterSet("Synth", 10);
+
+        store.put(parameterSet, "PID101", PROFILE);
+        // the load, the put is written after it
+        workerTasks.poll().run();
+        store.put(parameterSet, "PID102", PROFILE);
+        store.put(parameterSet, "PID103", PROFILE);
+        assertEquals(1, workerTasks.size());
+        workerTasks.poll().run();
+        assertEquals(1, workerTasks.size());
+        workerTasks.poll().run();
+        assertEquals(0, workerTasks.size());
+
+        final StepProfileStore restarted = createStore(directory);
+        for (final String pid : List.of("PID101", "PID102", "PID103")) {
+            assertEquals(PROFILE, restarted.get(parameterSet, pid));
+        }
+    }
+
+    @Test
+    void failedSaveLeavesNoTempFile() throws IOException {
+        final Path directory = tempDir.resolve("steps");
+        final DeviceParameterSet parameterSet = createParameterSet("Synth", 10);
+        final StringBuilder fileName = new StringBuilder();
+        for (final byte value : parameterSet.getHash()) {
+            fileName.append("%02x".formatted(value));
+        }
+        // a non-empty directory in place of the profile file makes the move fail
+        final Path blocker = Files.createDirectories(directory.resolve(fileName.append(".steps").toString()));
+        Files.createFile(blocker.resolve("keep"));
+
+        createStore(directory).put(parameterSet, "PID101", PROFILE);
+        assertEquals(List.of(blocker), list(directory));
+        assertFalse(errors.isEmpty());
+    }
+}
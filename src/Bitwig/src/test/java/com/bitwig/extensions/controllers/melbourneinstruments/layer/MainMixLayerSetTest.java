@@ -0,0 +1,246 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.layer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.bitwig.extension.callback.IntegerValueChangedCallback;
+import com.bitwig.extension.controller.ControllerExtension;
+import com.bitwig.extension.controller.api.ControllerHost;
+import com.bitwig.extension.controller.api.CursorTrack;
+import com.bitwig.extension.controller.api.Send;
+import com.bitwig.extension.controller.api.SettableIntegerValue;
+import com.bitwig.extension.controller.api.TrackBank;
+import com.bitwig.extensions.controllers.melbourneinstruments.MainLayerHandler;
+import com.bitwig.extensions.controllers.melbourneinstruments.MidiProcessor;
+import com.bitwig.extensions.controllers.melbourneinstruments.RotoHwElements;
+import com.bitwig.extensions.controllers.melbourneinstruments.StubApiAnswer;
+import com.bitwig.extensions.controllers.melbourneinstruments.TestMidiHost;
+import com.bitwig.extensions.controllers.melbourneinstruments.states.MasterEfxTrackBank;
+import com.bitwig.extensions.controllers.melbourneinstruments.states.ProjectTrackMirror;
+import com.bitwig.extensions.framework.Layers;
+import com.bitwig.extensions.framework.time.TimerWheel;
+import com.bitwig.extensions.framework.values.BasicIntegerValue;
+import com.bitwig.extensions.framework.values.BooleanValueObject;
+
+/**
+ * Scrolls the main mix layer set over a stub track bank that reports its new position some time after the request,
+ * like Bitwig does.
+ */
+class MainMixLayerSetTest {
+    // retry interval of deferred updates before they waited for the scroll settled listener
+    private static final int RETRY_TIME = 30;
+
+    private final StubApiAnswer api = new StubApiAnswer();
+    private final TestMidiHost testHost = new TestMidiHost(api);
+    private final MainLayerHandler mixState = mock(MainLayerHandler.class);
+    private final CursorTrack cursorTrack = mock(CursorTrack.class, api);
+    private final TrackBank projectBank = mock(TrackBank.class, api);
+    private MidiProcessor processor;
+    private MainMixLayerSet mixLayerSet;
+    private IntegerValueChangedCallback scrollObserver;
+    private int bankPosition;
+    private long now;
+    private long settledAt;
+    private int settledCount;
+
+    @BeforeEach
+    void setUp() {
+        final ControllerHost host = testHost.getHost();
+        final ControllerExtension extension = new ControllerExtension(null, host) {
+            @Override
+            public void init() {
+            }
+
+            @Override
+            public void exit() {
+            }
+
+            @Override
+            public void flush() {
+            }
+        };
+        final TrackBank trackBank = host.createMainTrackBank(8, 0, 0);
+        final SettableIntegerValue scrollPosition = trackBank.scrollPosition();
+        when(scrollPosition.get()).thenAnswer(invocation -> bankPosition);
+
+        processor = testHost.createInitializedProcessor(mixState);
+        mixLayerSet = new MainMixLayerSet(new Layers(extension), processor, "MAIN", trackBank,
+            createEffectTrackSet(cursorTrack, processor), new ProjectTrackMirror(projectBank));
+        mixLayerSet.setScrollSettledListener(() -> {
+            settledAt = now;
+            settledCount++;
+        });
+
+        final ArgumentCaptor<IntegerValueChangedCallback> captor =
+            ArgumentCaptor.forClass(IntegerValueChangedCallback.class);
+        verify(scrollPosition).addValueObserver(captor.capture());
+        scrollObserver = captor.getValue();
+    }
+
+    /**
+     * @return an effect track set with two sends on the sends of the given cursor track
+     */
+    static EffectTrackSet createEffectTrackSet(final CursorTrack cursorTrack, final MidiProcessor processor) {
+        final MasterEfxTrackBank masterEfx = mock(MasterEfxTrackBank.class);
+        final BasicIntegerValue sendCount = new BasicIntegerValue();
+        sendCount.set(2);
+        when(masterEfx.getSendCount()).thenReturn(sendCount);
+        when(masterEfx.getMasterSelected()).thenReturn(new BooleanValueObject());
+        for (int i = 0; i < 2; i++) {
+            setSendName(cursorTrack, i, "FX %d".formatted(i + 1));
+        }
+        return new EffectTrackSet(cursorTrack, masterEfx, processor, new BooleanValueObject());
+    }
+
+    private static void setSendName(final CursorTrack cursorTrack, final int index, final String name) {
+        final Send send = cursorTrack.sendBank().getItemAt(index);
+        when(send.exists().get()).thenReturn(true);
+        when(send.name().get()).thenReturn(name);
+    }
+
+    /**
+     * @return command and sub command of the frames sent since the last call
+     */
+    private List<String> drainCommands() {
+        processor.getTransmitQueue().setBytesPerMs(1_000_000);
+        while (processor.getTransmitQueue().drain()) {
+            Thread.onSpinWait();
+        }
+        final List<String> commands =
+            testHost.getSentSysEx().stream().map(data -> "%02x%02x".formatted(data[5], data[6])).toList();
+        testHost.getSentSysEx().clear();
+        return commands;
+    }
+
+    private void bindControls() {
+        // API 1.6, single track slots can be updated
+        testHost.getSysExCallback().sysexDataReceived(TestMidiHost.hex(MidiProcessor.CMD_ID_GENERAL, 0x10, 1, 6));
+        final RotoHwElements hwElements = new RotoHwElements(processor, testHost.getHost().createHardwareSurface());
+        mixLayerSet.bind(hwElements.getButtons(), hwElements.getKnobs(), () -> {
+        }, new BooleanValueObject());
+    }
+
+    private void reportPosition(final long time, final int position) {
+        now = time;
+        bankPosition = position;
+        scrollObserver.valueChanged(position);
+    }
+
+    @Test
+    void settledListenerWaitsForTheRequestedPosition() {
+        mixLayerSet.setTrackOffset(8);
+        reportPosition(3, 4);
+        assertEquals(0, settledCount);
+
+        reportPosition(7, 8);
+        assertEquals(1, settledCount);
+        assertEquals(7, settledAt);
+    }
+
+    @Test
+    void settledScrollIsProcessedOnTheNextFlush() {
+        mixLayerSet.setScrollSettledListener(processor::requestUpdateOnFlush);
+        clearInvocations(mixState);
+
+        mixLayerSet.setTrackOffset(8);
+        reportPosition(20, 8);
+        verify(mixState, never()).processPendingUpdate();
+        processor.flush();
+        verify(mixState).processPendingUpdate();
+    }
+
+    @Test
+    void scrollToResendLatency() {
+        final Random random = new Random(7);
+        final int runs = 1000;
+        long oldSum = 0;
+        long newSum = 0;
+        long oldMax = 0;
+        long newMax = 0;
+        for (int run = 0; run < runs; run++) {
+            // the bank reports its new position 1 to 60 ms after the request
+            final long landing = 1 + random.nextInt(60);
+            final int target = bankPosition + 8;
+            now = 0;
+            settledCount = 0;
+            mixLayerSet.setTrackOffset(target);
+            reportPosition(landing / 2, target - 4);
+            reportPosition(landing, target);
+            assertEquals(1, settledCount, "intermediate position reported as settled");
+
+            // before: the first pass on the next tick is deferred, then retried until the bank is in place
+            long oldLatency = TimerWheel.DEFAULT_TICK_TIME;
+            while (oldLatency < landing) {
+                oldLatency += RETRY_TIME;
+            }
+            oldSum += oldLatency;
+            oldMax = Math.max(oldMax, oldLatency);
+            newSum += settledAt;
+            newMax = Math.max(newMax, settledAt);
+            assertEquals(landing, settledAt);
+        }
+        System.out.printf("scroll to resend: retry avg %.1f ms max %d ms, settled listener avg %.1f ms max %d ms%n",
+            (double) oldSum / runs, oldMax, (double) newSum / runs, newMax);
+        assertTrue(newSum < oldSum);
+    }
+
+    @Test
+    void renameOnlyResendsTheSendsIfTheyChanged() {
+        bindControls();
+        mixLayerSet.setTrackNumber(2);
+        for (int i = 0; i < 2; i++) {
+            mixLayerSet.setTrackExists(i, true);
+            mixLayerSet.setName(i, "Track %d".formatted(i + 1));
+        }
+        mixLayerSet.sendStates();
+        final String sendCount = "%02x03".formatted(MidiProcessor.CMD_ID_MIXER);
+        final String sendNames = "%02x08".formatted(MidiProcessor.CMD_ID_MIXER);
+        final List<String> full = drainCommands();
+        assertTrue(full.contains(sendCount) && full.contains(sendNames), full.toString());
+
+        mixLayerSet.setName(0, "Bass");
+        mixLayerSet.sendChangedStates();
+        final List<String> renamed = drainCommands();
+        assertEquals(1, renamed.size(), renamed.toString());
+
+        mixLayerSet.sendChangedStates();
+        assertEquals(List.of(), drainCommands());
+
+        setSendName(cursorTrack, 1, "Delay");
+        mixLayerSet.sendChangedStates();
+        assertEquals(List.of(sendNames), drainCommands());
+    }
+
+    @Test
+    void mirrorWaitsForTheTrackCount() {
+        bindControls();
+        final ArgumentCaptor<IntegerValueChangedCallback> captor =
+            ArgumentCaptor.forClass(IntegerValueChangedCallback.class);
+        verify(projectBank.itemCount()).addValueObserver(captor.capture());
+        drainCommands();
+
+        mixLayerSet.setTrackOffset(8);
+        assertEquals(List.of(), drainCommands(), "page sent before the track count is known");
+
+        captor.getValue().valueChanged(8);
+        mixLayerSet.setTrackOffset(16);
+        assertEquals(List.of(), drainCommands(), "page behind the last track sent");
+
+        captor.getValue().valueChanged(20);
+        mixLayerSet.setTrackOffset(8);
+        assertFalse(drainCommands().isEmpty());
+    }
+}
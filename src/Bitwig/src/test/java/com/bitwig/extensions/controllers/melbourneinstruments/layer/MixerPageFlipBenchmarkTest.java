@@ -0,0 +1,212 @@
+package com.bitwig.extensions.controllers.melbourneinstruments.layer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.bitwig.extension.callback.BooleanValueChangedCallback;
+import com.bitwig.extension.callback.ColorValueChangedCallback;
+import com.bitwig.extension.callback.IntegerValueChangedCallback;
+import com.bitwig.extension.callback.StringValueChangedCallback;
+import com.bitwig.extension.controller.ControllerExtension;
+import com.bitwig.extension.controller.api.BooleanValue;
+import com.bitwig.extension.controller.api.ColorValue;
+import com.bitwig.extension.controller.api.ControllerHost;
+import com.bitwig.extension.controller.api.CursorTrack;
+import com.bitwig.extension.controller.api.IntegerValue;
+import com.bitwig.extension.controller.api.StringValue;
+import com.bitwig.extension.controller.api.Track;
+import com.bitwig.extension.controller.api.TrackBank;
+import com.bitwig.extensions.controllers.melbourneinstruments.MainLayerHandler;
+import com.bitwig.extensions.controllers.melbourneinstruments.MidiProcessor;
+import com.bitwig.extensions.controllers.melbourneinstruments.RotoHwElements;
+import com.bitwig.extensions.controllers.melbourneinstruments.StubApiAnswer;
+import com.bitwig.extensions.controllers.melbourneinstruments.TestMidiHost;
+import com.bitwig.extensions.controllers.melbourneinstruments.TransmitQueue;
+import com.bitwig.extensions.controllers.melbourneinstruments.states.ProjectTrackMirror;
+import com.bitwig.extensions.controllers.melbourneinstruments.value.ColorUtil;
+import com.bitwig.extensions.framework.Layers;
+import com.bitwig.extensions.framework.values.BooleanValueObject;
+
+/**
+ * Flips through all mixer pages of projects of different sizes. The stub track bank only lands on the new page after
+ * the flip, so everything sent before it comes from the project track mirror. The byte counts include the send count
+ * and send names of the effect track set.
+ */
+class MixerPageFlipBenchmarkTest {
+    private static final int ROUNDS = 100;
+
+    private StubApiAnswer api;
+    private TestMidiHost testHost;
+    private ControllerHost host;
+    private MidiProcessor processor;
+    private TransmitQueue transmitQueue;
+    private Layers layers;
+    private int bankPosition;
+
+    private record FlipResult(int mirroredPages, int pages, long flipTime, long bytesBeforeLanding,
+        long bytesAfterLanding) {
+    }
+
+    /**
+     * Starts over on a new host, the stubs of the API record every call made to them.
+     */
+    private void createHost() {
+        api = new StubApiAnswer();
+        testHost = new TestMidiHost(api);
+        host = testHost.getHost();
+        layers = new Layers(new ControllerExtension(null, host) {
+            @Override
+            public void init() {
+            }
+
+            @Override
+            public void exit() {
+            }
+
+            @Override
+            public void flush() {
+            }
+        });
+        processor = testHost.createInitializedProcessor(mock(MainLayerHandler.class));
+        // API 1.6, single track slots can be updated
+        testHost.getSysExCallback().sysexDataReceived(TestMidiHost.hex(MidiProcessor.CMD_ID_GENERAL, 0x10, 1, 6));
+        transmitQueue = processor.getTransmitQueue();
+        transmitQueue.setBytesPerMs(1_000_000);
+    }
+
+    /**
+     * @return the observer registered on the given value
+     */
+    private static <V, T> T captureObserver(final V value, final Class<T> type, final BiConsumer<V, T> registration) {
+        final ArgumentCaptor<T> captor = ArgumentCaptor.forClass(type);
+        final V verified = verify(value);
+        registration.accept(verified, captor.capture());
+        return captor.getValue();
+    }
+
+    private static int colorOf(final int index) {
+        return ColorUtil.toColor(0.2f, 0.4f, (index % 8) / 8f);
+    }
+
+    private ProjectTrackMirror createMirror(final int trackCount) {
+        final TrackBank projectBank = host.createMainTrackBank(ProjectTrackMirror.SIZE, 0, 0);
+        final ProjectTrackMirror mirror = new ProjectTrackMirror(projectBank);
+        captureObserver(projectBank.itemCount(), IntegerValueChangedCallback.class,
+            IntegerValue::addValueObserver).valueChanged(trackCount);
+        for (int i = 0; i < Math.min(trackCount, ProjectTrackMirror.SIZE); i++) {
+            final Track track = projectBank.getItemAt(i);
+            captureObserver(track.exists(), BooleanValueChangedCallback.class, BooleanValue::addValueObserver)
+                .valueChanged(true);
+            captureObserver(track.name(), StringValueChangedCallback.class, StringValue::addValueObserver)
+                .valueChanged("Track %d".formatted(i));
+            captureObserver(track.color(), ColorValueChangedCallback.class, ColorValue::addValueObserver)
+                .valueChanged(0.2f, 0.4f, (i % 8) / 8f);
+        }
+        return mirror;
+    }
+
+    /**
+     * @return number of bytes sent since the last call
+     */
+    private long drainBytes() {
+        while (transmitQueue.drain()) {
+            Thread.onSpinWait();
+        }
+        final List<byte[]> sent = testHost.getSentSysEx();
+        long bytes = 0;
+        for (final byte[] data : sent) {
+            bytes += data.length;
+        }
+        sent.clear();
+        testHost.getSentMidi().clear();
+        return bytes;
+    }
+
+    private FlipResult flipPages(final int trackCount) {
+        createHost();
+        final TrackBank trackBank = host.createMainTrackBank(8, 0, 0);
+        when(trackBank.scrollPosition().get()).thenAnswer(invocation -> bankPosition);
+        bankPosition = 0;
+        // the send names are read on every flip, a stub recording each read would slow down the later flips
+        final CursorTrack cursorTrack = mock(CursorTrack.class, withSettings().stubOnly().defaultAnswer(api));
+        final EffectTrackSet effectTrackSet = MainMixLayerSetTest.createEffectTrackSet(cursorTrack, processor);
+        final MainMixLayerSet mixLayerSet =
+            new MainMixLayerSet(layers, processor, "MAIN", trackBank, effectTrackSet, createMirror(trackCount));
+        final RotoHwElements hwElements = new RotoHwElements(processor, host.createHardwareSurface());
+        mixLayerSet.bind(hwElements.getButtons(), hwElements.getKnobs(), () -> {
+        }, new BooleanValueObject());
+        mixLayerSet.setTrackNumber(trackCount);
+        drainBytes();
+
+        final int pages = (trackCount + 7) / 8;
+        int mirroredPages = 0;
+        long flipTime = 0;
+        long bytesBefore = 0;
+        long bytesAfter = 0;
+        // the first half warms up
+        for (int round = 0; round < 2 * ROUNDS; round++) {
+            for (int page = 1; page <= pages; page++) {
+                final int firstIndex = (page % pages) * 8;
+                final long start = System.nanoTime();
+                mixLayerSet.setTrackOffset(firstIndex);
+                final long time = System.nanoTime() - start;
+                final long before = drainBytes();
+
+                // the bank lands and its observers report the same values as the mirror
+                bankPosition = firstIndex;
+                for (int i = 0; i < 8; i++) {
+                    final int index = firstIndex + i;
+                    mixLayerSet.setTrackExists(i, index < trackCount);
+                    if (index < trackCount) {
+                        mixLayerSet.setName(i, "Track %d".formatted(index));
+                        mixLayerSet.setColor(i, colorOf(index));
+                    }
+                }
+                mixLayerSet.sendChangedStates();
+                final long after = drainBytes();
+                if (round >= ROUNDS) {
+                    flipTime += time;
+                    bytesBefore += before;
+                    bytesAfter += after;
+                    if (before > 0) {
+                        mirroredPages++;
+                    }
+                }
+            }
+        }
+        final int flips = ROUNDS * pages;
+        return new FlipResult(mirroredPages / ROUNDS, pages, flipTime / flips, bytesBefore / flips,
+            bytesAfter / flips);
+    }
+
+    @Test
+    void mirroredPagesAreSentBeforeTheBankLands() {
+        System.out.println("tracks  mirrored pages  flip->details  bytes before/after landing");
+        for (final int trackCount : new int[] {64, 256, 512, 1024}) {
+            final FlipResult result = flipPages(trackCount);
+            System.out.printf("%6d  %7d/%-7d %10.1f us  %8d / %d%n", trackCount, result.mirroredPages(),
+                result.pages(), result.flipTime() / 1000.0, result.bytesBeforeLanding(), result.bytesAfterLanding());
+
+            final int mirrored = Math.min(trackCount, ProjectTrackMirror.SIZE) / 8;
+            assertEquals(mirrored, result.mirroredPages());
+            if (trackCount <= ProjectTrackMirror.SIZE) {
+                assertTrue(result.bytesBeforeLanding() > 0);
+                // the landing bank reports what the mirror already sent
+                assertEquals(0, result.bytesAfterLanding());
+            } else {
+                // pages beyond the mirror wait for the bank as before
+                assertTrue(result.bytesAfterLanding() > 0);
+            }
+        }
+    }
+}
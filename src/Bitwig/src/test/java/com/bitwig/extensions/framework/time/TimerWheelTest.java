@@ -0,0 +1,175 @@
+package com.bitwig.extensions.framework.time;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Drives the wheel with a fake scheduler that runs the wake-up tasks on the test thread once their delay has passed
+ * in real time, like the host does on the controller thread.
+ */
+class TimerWheelTest {
+    private static final long MS = 1_000_000L;
+
+    private static class FakeScheduler implements TimerWheel.TickScheduler {
+        private record Task(long due, long order, Runnable action) {
+        }
+
+        private final PriorityQueue<Task> tasks = new PriorityQueue<>(
+            (t1, t2) -> t1.due != t2.due ? Long.compare(t1.due, t2.due) : Long.compare(t1.order, t2.order));
+        private long order;
+        private int requests;
+
+        @Override
+        public void scheduleTask(final Runnable task, final long delay) {
+            requests++;
+            tasks.add(new Task(System.nanoTime() + delay * MS, order++, task));
+        }
+
+        /**
+         * Runs the tasks in order of their due time until none are left or the time limit is reached.
+         */
+        void runFor(final long timeMs) {
+            final long end = System.nanoTime() + timeMs * MS;
+            while (!tasks.isEmpty() && tasks.peek().due <= end) {
+                final Task task = tasks.poll();
+                waitUntil(task.due);
+                task.action.run();
+            }
+        }
+
+        int getPending() {
+            return tasks.size();
+        }
+    }
+
+    private static void waitUntil(final long nanoTime) {
+        long remaining = nanoTime - System.nanoTime();
+        while (remaining > 0) {
+            if (remaining > 2 * MS) {
+                try {
+                    Thread.sleep((remaining - MS) / MS);
+                }
+                catch (final InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } else {
+                Thread.onSpinWait();
+            }
+            remaining = nanoTime - System.nanoTime();
+        }
+    }
+
+    private static void busy(final long nanos) {
+        final long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private final FakeScheduler scheduler = new FakeScheduler();
+    private final TimerWheel wheel = new TimerWheel(scheduler);
+
+    @Test
+    void delayedActionFiresOnce() {
+        final int[] count = new int[1];
+        final TimedEvent event = wheel.delay(() -> count[0]++, 20);
+        scheduler.runFor(10);
+        assertEquals(0, count[0]);
+        scheduler.runFor(50);
+        assertEquals(1, count[0]);
+        assertTrue(event.isCompleted());
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    void cancelledEventDoesNotFire() {
+        final int[] count = new int[1];
+        final TimedEvent event = wheel.delay(() -> count[0]++, 20);
+        event.cancel();
+        assertEquals(0, wheel.getPendingCount());
+        scheduler.runFor(50);
+        assertEquals(0, count[0]);
+    }
+
+    @Test
+    void rescheduleMovesDeadline() {
+        final int[] count = new int[1];
+        final TimedDelayEvent event = new TimedDelayEvent(() -> count[0]++, 30);
+        wheel.schedule(event);
+        scheduler.runFor(20);
+        wheel.schedule(event);
+        scheduler.runFor(20);
+        assertEquals(0, count[0]);
+        assertEquals(1, wheel.getPendingCount());
+        scheduler.runFor(50);
+        assertEquals(1, count[0]);
+    }
+
+    @Test
+    void repeatingEventFiresUntilCancelled() {
+        final List<Integer> repeats = new ArrayList<>();
+        final TimeRepeatEvent event = new TimeRepeatEvent(repeats::add, 10, 10);
+        wheel.schedule(event);
+        scheduler.runFor(55);
+        event.cancel();
+        scheduler.runFor(50);
+        assertEquals(List.of(1, 2, 3, 4, 5), repeats);
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    void idleWheelRequestsNoWakeUps() {
+        wheel.delay(() -> {
+        }, 10);
+        scheduler.runFor(100);
+        final int requests = scheduler.requests;
+        scheduler.runFor(100);
+        assertEquals(0, scheduler.getPending());
+        assertEquals(requests, scheduler.requests);
+    }
+
+    @Test
+    void deadlineJitterUnderLoad() {
+        final Random random = new Random(4);
+        final int events = 1000;
+        final long[] lateness = new long[events];
+        final long[] deadlines = new long[events];
+        final int[] fired = new int[1];
+        // a repeating display refresh and a flood of one-shot events, each handler burns 100 us of controller time
+        final TimeRepeatEvent refresh = new TimeRepeatEvent(() -> busy(100_000), 0, 30);
+        wheel.schedule(refresh);
+        for (int i = 0; i < events; i++) {
+            final int index = i;
+            final long delay = 1 + random.nextInt(400);
+            deadlines[i] = System.nanoTime() + delay * MS;
+            wheel.delay(() -> {
+                lateness[index] = System.nanoTime() - deadlines[index];
+                fired[0]++;
+                busy(100_000);
+            }, delay);
+        }
+        scheduler.runFor(600);
+        refresh.cancel();
+
+        assertEquals(events, fired[0]);
+        Arrays.sort(lateness);
+        final double p50 = lateness[events / 2] / 1e6;
+        final double p99 = lateness[events * 99 / 100] / 1e6;
+        final double max = lateness[events - 1] / 1e6;
+        System.out.printf("timer wheel lateness over %d events: min=%.2f p50=%.2f p99=%.2f max=%.2f ms%n", events,
+            lateness[0] / 1e6, p50, p99, max);
+        assertTrue(lateness[0] >= 0, "event fired before its deadline");
+        // the polling loop this replaced was late by up to 30 ms, 15 ms on average
+        assertFalse(p50 > 2 * TimerWheel.DEFAULT_TICK_TIME, "median lateness %.2f ms".formatted(p50));
+    }
+}